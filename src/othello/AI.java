@@ -1,16 +1,89 @@
 package othello;
 
-import java.util.concurrent.Semaphore;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 public class AI
 {
-    Semaphore sem = new Semaphore(0);
-    
-    int threads = 0;
-    
-    Point best = null;
 
-    int bestScore;
+    /**
+     * Minimum number of remaining plies to search the moves of a position in parallel.<br>
+     * Smaller subtrees are searched by a single thread, as splitting them costs more than it saves.
+     */
+    private static final int SPLIT_DEPTH = 3;
+
+    /**
+     * Pool running the parallel search.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Value of {@link #deadline}, if the search is not limited by time.
+     */
+    private static final long NO_DEADLINE = Deadline.NONE;
+
+    /**
+     * Time in {@link System#nanoTime()}, at which the current search has to stop.
+     */
+    private long deadline = NO_DEADLINE;
+
+    /**
+     * Tells if the current search ran out of time.<br>
+     * Its result has to be discarded then.
+     */
+    private volatile boolean aborted;
+
+    /**
+     * Thread, which called the current search.<br>
+     * If it is interrupted, the search is {@link #aborted}.
+     */
+    private Thread caller;
+
+    /**
+     * Solves the last moves of a game.
+     */
+    private final EndgameSolver solver = new EndgameSolver();
+
+    /**
+     * Maximum number of empty squares, at which the game is solved instead of searched.
+     */
+    private int endgameEmpties = EndgameSolver.DEFAULT_EMPTIES;
+
+    /**
+     * Weights of the evaluation features, added to the score by {@link #MATRIX}.
+     */
+    private Features features = Features.NONE;
+
+    /**
+     * Opening book, or {@code null}, if every move is searched.
+     */
+    private OpeningBook book;
+
+    /**
+     * Counters of the current move, summed up from the {@link Search} tasks once they are joined.
+     */
+    private SearchCounters counters = new SearchCounters();
+
+    /**
+     * Statistics of the last search.
+     */
+    private SearchStatistics statistics = SearchStatistics.NONE;
+
+    /**
+     * Monitor, to which every search is reported, or {@code null}.
+     */
+    private SearchMonitor monitor;
+
+    /**
+     * Listener, which is told about every completed depth, or {@code null}.
+     */
+    private Listener listener;
 
     // @formatter:off
     private static final int[][] MATRIX_NEW = {
@@ -26,7 +99,7 @@ public class AI
     // @formatter:on
 
     // @formatter:off
-    private static final int[][] MATRIX = {
+    static final int[][] MATRIX = {
                                            { 10000,   5, 500, 200, 200, 500,   5, 10000 },
                                            {     5,   1,  50, 150, 150,  50,   1,     5 },
                                            {   500,  50, 250, 100, 100, 250,  50,   500 },
@@ -39,6 +112,39 @@ public class AI
     // @formatter:on
 
 
+    /**
+     * Returns a new A.I., which searches in the common pool.
+     */
+    public AI()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+
+    /**
+     * Returns a new A.I.
+     *
+     * @param pool pool running the parallel search
+     */
+    public AI(ForkJoinPool pool)
+    {
+        super();
+        this.pool = pool;
+    }
+
+
+    /**
+     * Puts the best move found by a search of fixed depth.<br>
+     * If a {@link Listener} is set, the depths up to {@code ply} are searched one after another, so it can be told
+     * about each of them; this visits about one tenth more nodes. The search stops, if the calling thread is
+     * interrupted; the interrupt status is kept.
+     *
+     * @param game game to move in
+     * @param ply search depth
+     * @return {@code game}
+     * @throws IllegalArgumentException if the game is already over, or if {@code ply} is lower than 1
+     * @throws CancellationException if the calling thread was interrupted, {@code game} is not changed then
+     */
     public Game move(Game game, int ply)
     {
         if (game.isGameOver())
@@ -49,99 +155,471 @@ public class AI
         {
             throw new IllegalArgumentException("ply has to be 1 or higher");
         }
-        int correctPly = ply > game.getNumberOfFreeTiles() ? game.getNumberOfFreeTiles() : ply;
-        Point best = move(game, correctPly, game.getCurrentPlayer());
+        long begin = System.nanoTime();
+        start();
+        if (probe(game))
+        {
+            finish(begin, SearchStatistics.Source.BOOK, 0);
+            return game;
+        }
+        int empties = game.getNumberOfFreeTiles();
+        if (solve(game, EndgameSolver.NO_DEADLINE))
+        {
+            finish(begin, SearchStatistics.Source.ENDGAME, empties);
+            return game;
+        }
+        int correctPly = ply > empties ? empties : ply;
+        caller = Thread.currentThread();
+        Listener listener = this.listener;
+        Point best = null;
+        try
+        {
+            for (int depth = (listener == null) ? correctPly : 1; (depth <= correctPly) && !aborted; depth++)
+            {
+                best = move(game, depth, game.getCurrentPlayer());
+                if ((listener != null) && !aborted)
+                {
+                    listener.completed(depth, Bitboard.square(best.x, best.y));
+                }
+            }
+        }
+        finally
+        {
+            aborted = false;
+        }
+        if (caller.isInterrupted())
+        {
+            throw new CancellationException("search was interrupted");
+        }
+        finish(begin, SearchStatistics.Source.SEARCH, correctPly);
+        game.put(best.x, best.y);
+        return game;
+    }
+
+
+    /**
+     * Searches one ply deeper at a time, until the time budget runs out.<br>
+     * Puts the best move of the deepest completed search. The first ply is always completed, even if the budget is
+     * already exceeded. If solving the endgame doesn't finish within the budget, the game is searched instead. The
+     * search stops, if the calling thread is interrupted; the interrupt status is kept.
+     *
+     * @param game game to move in
+     * @param budget time budget for the whole move
+     * @return {@code game}
+     * @throws IllegalArgumentException if the game is already over, or if the budget is negative
+     * @throws CancellationException if the calling thread was interrupted, {@code game} is not changed then
+     */
+    public Game move(Game game, Duration budget)
+    {
+        if (game.isGameOver())
+        {
+            throw new IllegalArgumentException("game is already over");
+        }
+        if (budget.isNegative())
+        {
+            throw new IllegalArgumentException("budget must not be negative");
+        }
+        long start = System.nanoTime();
+        long end = Deadline.of(start, budget);
+        start();
+        if (probe(game))
+        {
+            finish(start, SearchStatistics.Source.BOOK, 0);
+            return game;
+        }
+        int empties = game.getNumberOfFreeTiles();
+        if (solve(game, end))
+        {
+            finish(start, SearchStatistics.Source.ENDGAME, empties);
+            return game;
+        }
+        int completed = 1;
+        caller = Thread.currentThread();
+        Listener listener = this.listener;
+        Point best;
+        try
+        {
+            best = move(game, 1, game.getCurrentPlayer());
+            if ((listener != null) && !aborted)
+            {
+                listener.completed(1, Bitboard.square(best.x, best.y));
+            }
+            deadline = end;
+            for (int ply = 2; (ply <= game.getNumberOfFreeTiles()) && !Deadline.isPast(deadline); ply++)
+            {
+                aborted = false;
+                Point current = move(game, ply, game.getCurrentPlayer());
+                if (aborted)
+                {
+                    break;
+                }
+                best = current;
+                completed = ply;
+                if (listener != null)
+                {
+                    listener.completed(ply, Bitboard.square(best.x, best.y));
+                }
+            }
+        }
+        finally
+        {
+            deadline = NO_DEADLINE;
+            aborted = false;
+        }
+        if (caller.isInterrupted())
+        {
+            throw new CancellationException("search was interrupted");
+        }
+        finish(start, SearchStatistics.Source.SEARCH, completed);
         game.put(best.x, best.y);
         return game;
     }
 
 
+    /**
+     * Returns the maximum number of empty squares, at which the game is solved instead of searched.
+     *
+     * @return number of empty squares
+     */
+    public int getEndgameEmpties()
+    {
+        return endgameEmpties;
+    }
+
+
+    /**
+     * Sets the maximum number of empty squares, at which the game is solved instead of searched.
+     *
+     * @param endgameEmpties number of empty squares, {@code 0} to never solve
+     * @throws IllegalArgumentException if {@code endgameEmpties} is negative
+     */
+    public void setEndgameEmpties(int endgameEmpties)
+    {
+        if (endgameEmpties < 0)
+        {
+            throw new IllegalArgumentException("endgameEmpties must not be negative");
+        }
+        this.endgameEmpties = endgameEmpties;
+    }
+
+
+    /**
+     * Returns the weights of the evaluation features, which are added to the score by {@link #MATRIX}.
+     *
+     * @return weights
+     */
+    public Features getFeatures()
+    {
+        return features;
+    }
+
+
+    /**
+     * Sets the weights of the evaluation features, which are added to the score by {@link #MATRIX}.
+     *
+     * @param features weights, {@link Features#NONE} to evaluate by {@link #MATRIX} only
+     * @throws IllegalArgumentException if {@code features} is {@code null}
+     */
+    public void setFeatures(Features features)
+    {
+        if (features == null)
+        {
+            throw new IllegalArgumentException("features must not be null");
+        }
+        this.features = features;
+    }
+
+
+    /**
+     * Forgets the results of all previous searches, so the next search starts like the first one.
+     */
+    public void clear()
+    {
+        solver.clear();
+    }
+
+
+    /**
+     * Returns the opening book.
+     *
+     * @return opening book, or {@code null}, if every move is searched
+     */
+    public OpeningBook getBook()
+    {
+        return book;
+    }
+
+
+    /**
+     * Sets the opening book, which is looked up before each search.
+     *
+     * @param book opening book, or {@code null} to search every move
+     */
+    public void setBook(OpeningBook book)
+    {
+        this.book = book;
+    }
+
+
+    /**
+     * Returns the statistics of the last search.<br>
+     * Counters of all threads are summed up; a search with a time budget or a {@link Listener} counts all steps of
+     * iterative deepening. The search has no pruning and no transposition table, so only solved endgames have table
+     * probes and hits, and there are no cutoffs.
+     *
+     * @return statistics
+     */
+    public SearchStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+
+    /**
+     * Returns the monitor, to which every search is reported.
+     *
+     * @return monitor, or {@code null} if searches aren't reported
+     */
+    public SearchMonitor getMonitor()
+    {
+        return monitor;
+    }
+
+
+    /**
+     * Sets the monitor, to which every search is reported.
+     *
+     * @param monitor monitor, or {@code null} to not report searches
+     */
+    public void setMonitor(SearchMonitor monitor)
+    {
+        this.monitor = monitor;
+    }
+
+
+    /**
+     * Returns the listener, which is told about every completed depth.
+     *
+     * @return listener, or {@code null} if there is none
+     */
+    public Listener getListener()
+    {
+        return listener;
+    }
+
+
+    /**
+     * Sets the listener, which is told about every completed depth.
+     *
+     * @param listener listener, or {@code null} for none
+     */
+    public void setListener(Listener listener)
+    {
+        this.listener = listener;
+    }
+
+
+    /**
+     * Starts the counters of a new move.
+     */
+    private void start()
+    {
+        counters = new SearchCounters();
+    }
+
+
+    /**
+     * Turns the {@link #counters} into the {@link #statistics} of the finished search, and reports them to the
+     * {@link #monitor}.
+     *
+     * @param begin {@link System#nanoTime()} at the start of the move
+     * @param source how the move was found
+     * @param depth depth of the deepest completed search
+     */
+    private void finish(long begin, SearchStatistics.Source source, int depth)
+    {
+        if (source == SearchStatistics.Source.ENDGAME)
+        {
+            counters = solver.getCounters();
+        }
+        statistics = new SearchStatistics(source, depth, counters, System.nanoTime() - begin);
+        if (monitor != null)
+        {
+            monitor.record(statistics);
+        }
+    }
+
+
+    /**
+     * Puts the move of the {@link #book}, if it has one.
+     *
+     * @param game game to move in
+     * @return {@code true}, if the move was put
+     */
+    private boolean probe(Game game)
+    {
+        int move = (book == null) ? OpeningBook.NO_MOVE : book.getMove(game);
+        if (move == OpeningBook.NO_MOVE)
+        {
+            return false;
+        }
+        game.put(move % Game.DIM, move / Game.DIM);
+        return true;
+    }
+
+
+    /**
+     * Puts the move of perfect play, if few enough squares are empty and solving ends before the deadline.
+     *
+     * @param game game to move in
+     * @param deadline time in {@link System#nanoTime()}, at which solving has to stop, or
+     *            {@link EndgameSolver#NO_DEADLINE}
+     * @return {@code true}, if the move was put
+     * @throws CancellationException if the calling thread was interrupted
+     */
+    private boolean solve(Game game, long deadline)
+    {
+        if (game.getNumberOfFreeTiles() > endgameEmpties)
+        {
+            return false;
+        }
+        try
+        {
+            solver.solve(game, deadline);
+        }
+        catch (CancellationException e)
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                throw e;
+            }
+            return false;
+        }
+        int best = solver.getBestMove();
+        game.put(best % Game.DIM, best / Game.DIM);
+        return true;
+    }
+
+
     private Point move(Game game, int ply, Player player)
     {
-        threads = 0;
-        bestScore = Integer.MIN_VALUE;
+        List<Point> points = new ArrayList<>();
+        List<Search> tasks = new ArrayList<>();
+        long moves = game.getMoves();
         for (int x = 0; x < Game.DIM; x++)
         {
             for (int y = 0; y < Game.DIM; y++)
             {
-            	final int xCopy = x;
-            	final int yCopy = y;
-                Game clone = game.clone();
-                if (clone.put(x, y))
+                if ((moves & (1L << Bitboard.square(x, y))) != 0L)
                 {
-                    threads++;
-                    new Thread(() -> {
-                        Game current = move(clone, ply, player.getEnemy(), false, 1);
-                        int currentScore = evaluate(current, player, true);
-                        if (currentScore >= bestScore)
-                        {
-                            best = new Point(xCopy, yCopy);
-                            bestScore = currentScore;
-                        }
-                        sem.release();
-                    }).start();
+                    Game clone = game.clone();
+                    clone.makeMove(Bitboard.square(x, y));
+                    points.add(new Point(x, y));
+                    tasks.add(new Search(clone, ply, player, false, 1));
                 }
             }
         }
-        for (int i = 0; i < threads; i++) {
+        if (ply - 1 >= SPLIT_DEPTH)
+        {
+            // waits interruptibly, as the pool hides the interrupt from the tasks while the caller waits
+            ForkJoinTask<?> search = pool.submit(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
             try
             {
-                sem.acquire();
+                search.get();
             }
             catch (InterruptedException e)
             {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
-            }   
+                aborted = true;
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e)
+            {
+                throw new IllegalStateException("search failed", e.getCause());
+            }
+            search.quietlyJoin();
+        }
+        else
+        {
+            for (Search task : tasks)
+            {
+                task.invoke();
+            }
+        }
+        Point best = null;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < tasks.size(); i++)
+        {
+            int currentScore = tasks.get(i).join();
+            counters.add(tasks.get(i).counters);
+            if (currentScore >= bestScore)
+            {
+                best = points.get(i);
+                bestScore = currentScore;
+            }
         }
         return best;
     }
 
 
-    private Game move(Game game, int ply, Player player, boolean max, int currentPly)
+    /**
+     * Searches the game tree in place, using {@link Game#makeMove(int)} and {@link Game#unmakeMove(int, long)}.
+     *
+     * @param game game to search, is restored before returning
+     * @param ply search depth
+     * @param player player to evaluate for
+     * @param max {@code true}, if {@code player} is to move
+     * @param currentPly current depth
+     * @param counters counters of the current task
+     * @return minimax score of {@code game}, meaningless if the search was {@link #aborted}
+     */
+    private int move(Game game, int ply, Player player, boolean max, int currentPly, SearchCounters counters)
     {
-        if (currentPly == ply)
+        counters.nodes++;
+        if (aborted)
         {
-            return game;
+            return 0;
+        }
+        if (caller.isInterrupted() || Deadline.isPast(deadline))
+        {
+            aborted = true;
+            return 0;
+        }
+        if ((currentPly == ply) || game.isGameOver())
+        {
+            return evaluate(game, player);
         }
         else
         {
-            Game best = null;
+            counters.interiorNodes++;
             int bestScore = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            long moves = game.getMoves();
             for (int x = 0; x < Game.DIM; x++)
             {
                 for (int y = 0; y < Game.DIM; y++)
                 {
-                    Game clone = game.clone();
-                    if (clone.put(x, y))
+                    int square = Bitboard.square(x, y);
+                    if ((moves & (1L << square)) != 0L)
                     {
-                        Game current = move(clone, ply, player, !max, currentPly + 1);
-                        int currentScore = evaluate(current, player, max);
+                        long flips = game.makeMove(square);
+                        int currentScore = move(game, ply, player, !max, currentPly + 1, counters);
+                        game.unmakeMove(square, flips);
                         if (max)
                         {
-                            if (currentScore >= bestScore)
-                            {
-                                best = current;
-                                bestScore = currentScore;
-                            }
+                            bestScore = Math.max(bestScore, currentScore);
                         }
                         else
                         {
-                            if (currentScore <= bestScore)
-                            {
-                                best = current;
-                                bestScore = currentScore;
-                            }
+                            bestScore = Math.min(bestScore, currentScore);
                         }
                     }
                 }
             }
-            return best;
+            return bestScore;
         }
     }
 
 
-    private int evaluate(Game game, Player player, boolean max)
+    int evaluate(Game game, Player player)
     {
         if (game.isGameOver())
         {
@@ -149,25 +627,90 @@ public class AI
         }
         else
         {
-            int score = 0;
-            for (int x = 0; x < Game.DIM; x++)
+            return game.getPositionalScore(player) + features.evaluate(game, player);
+        }
+    }
+    
+    /**
+     * Searches a position, splitting into one subtask per move while enough plies remain.<br>
+     * The scores of the subtasks are combined in scan order, so the result is the same as the one of a search by a
+     * single thread. Each task counts into its own counters, which only the thread running it writes; the counters of
+     * the subtasks are added once they are joined.
+     */
+    private class Search extends RecursiveTask<Integer>
+    {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Game game;
+
+        private final int ply;
+
+        private final Player player;
+
+        private final boolean max;
+
+        private final int currentPly;
+
+        private final SearchCounters counters = new SearchCounters();
+
+
+        Search(Game game, int ply, Player player, boolean max, int currentPly)
+        {
+            super();
+            this.game = game;
+            this.ply = ply;
+            this.player = player;
+            this.max = max;
+            this.currentPly = currentPly;
+        }
+
+
+        @Override
+        protected Integer compute()
+        {
+            if ((ply - currentPly < SPLIT_DEPTH) || game.isGameOver() || aborted)
             {
-                for (int y = 0; y < Game.DIM; y++)
-                {
-                    if (game.getTile(x, y) == player)
-                    {
-                        score += MATRIX[x][y];
-                    }
-                    if (game.getTile(x, y) == player.getEnemy())
-                    {
-                        score -= MATRIX[x][y];
-                    }
-                }
+                return move(game, ply, player, max, currentPly, counters);
             }
-            return score;
+            counters.nodes++;
+            counters.interiorNodes++;
+            List<Search> tasks = new ArrayList<>();
+            for (long moves = game.getMoves(); moves != 0L; moves &= moves - 1L)
+            {
+                Game clone = game.clone();
+                clone.makeMove(Long.numberOfTrailingZeros(moves));
+                tasks.add(new Search(clone, ply, player, !max, currentPly + 1));
+            }
+            invokeAll(tasks);
+            int bestScore = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            for (Search task : tasks)
+            {
+                bestScore = max ? Math.max(bestScore, task.join()) : Math.min(bestScore, task.join());
+                counters.add(task.counters);
+            }
+            return bestScore;
         }
     }
-    
+
+    /**
+     * Receives the progress of a search.
+     */
+    @FunctionalInterface
+    public interface Listener
+    {
+
+        /**
+         * Tells that the search to a depth is completed.<br>
+         * Called on the searching thread; book moves and solved endgames are not reported.
+         *
+         * @param depth completed depth
+         * @param move bit index {@code y * }{@link Game#DIM}{@code  + x} of the best move at this depth
+         */
+        void completed(int depth, int move);
+
+    }
+
     private class Point {
     	
     	public final int x;
@@ -8,16 +8,18 @@ public class AI2
     {
         Game best = null;
         int bestScore = Integer.MIN_VALUE;
+        long moves = game.getMoves();
 
         for (int x = 0; x < Game.DIM; x++)
         {
             for (int y = 0; y < Game.DIM; y++)
             {
-                Game clone = game.clone();
-                if (clone.put(x, y))
+                if ((moves & (1L << Bitboard.square(x, y))) != 0L)
                 {
+                    Game clone = game.clone();
+                    clone.put(x, y);
                     int score = evaluate(clone, game.getCurrentPlayer());
-                    if (score > bestScore)
+                    if ((best == null) || (score > bestScore))
                     {
                         best = clone;
                         bestScore = score;
@@ -16,19 +16,6 @@ public class AI3
                                            { 10000, -2000, 500, 200, 200, 500, -2000, 10000 },
     };
     // @formatter:on
-    
-    // @formatter:off
-    private static final int[][] MATRIX = {
-                                           { 10000,   5, 500, 200, 200, 500,   5, 10000 },
-                                           {     5,   1,  50, 150, 150,  50,   1,     5 },
-                                           {   500,  50, 250, 100, 100, 250,  50,   500 },
-                                           {   200, 150, 100,  50,  50, 100, 150,   200 },
-                                           {   200, 150, 100,  50,  50, 100, 150,   200 },
-                                           {   500,  50, 250, 100, 100, 250,  50,   500 },
-                                           {     5,   1,  50, 150, 150,  50,   1,     5 },
-                                           { 10000,   5, 500, 200, 200, 500,   5, 10000 },
-    };
-    // @formatter:on
 
 
     public static Game move(Game game, int ply)
@@ -41,59 +28,70 @@ public class AI3
             throw new IllegalArgumentException("ply has to be 1 or higher");
         }
         int correctPly = ply > game.getNumberOfFreeTiles() ? game.getNumberOfFreeTiles() : ply;
-        Game best = move(game, correctPly, game.getCurrentPlayer(), 0, true);
-        for (int i = 0; i < correctPly - 1; i++)
+        Game clone = game.clone();
+        int bestSquare = -1;
+        int bestScore = Integer.MIN_VALUE;
+        long moves = game.getMoves();
+        for (int x = 0; x < Game.DIM; x++)
         {
-            best.undo();
+            for (int y = 0; y < Game.DIM; y++)
+            {
+                int square = Bitboard.square(x, y);
+                if ((moves & (1L << square)) != 0L)
+                {
+                    long flips = clone.makeMove(square);
+                    int currentScore = move(clone, correctPly, game.getCurrentPlayer(), 1, false);
+                    clone.unmakeMove(square, flips);
+                    if (currentScore >= bestScore)
+                    {
+                        bestSquare = square;
+                        bestScore = currentScore;
+                    }
+                }
+            }
         }
-        return best;
+        clone.put(bestSquare % Game.DIM, bestSquare / Game.DIM);
+        return clone;
     }
 
 
-    private static Game move(Game game, int ply, Player player, int currentPly, boolean max)
+    private static int move(Game game, int ply, Player player, int currentPly, boolean max)
     {
-        if (currentPly == ply)
+        if ((currentPly == ply) || game.isGameOver())
         {
-            return game;
+            return evaluate(game, player);
         }
         else
         {
-            Game best = null;
             int bestScore = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            long moves = game.getMoves();
             for (int x = 0; x < Game.DIM; x++)
             {
                 for (int y = 0; y < Game.DIM; y++)
                 {
-                    Game clone = game.clone();
-                    if (clone.put(x, y))
+                    int square = Bitboard.square(x, y);
+                    if ((moves & (1L << square)) != 0L)
                     {
-                        Game current = move(clone, ply, player, currentPly + 1, !max);
-                        int currentScore = evaluate(current, player, max);
+                        long flips = game.makeMove(square);
+                        int currentScore = move(game, ply, player, currentPly + 1, !max);
+                        game.unmakeMove(square, flips);
                         if (max)
                         {
-                            if (currentScore >= bestScore)
-                            {
-                                best = current;
-                                bestScore = currentScore;
-                            }
+                            bestScore = Math.max(bestScore, currentScore);
                         }
                         else
                         {
-                            if (currentScore <= bestScore)
-                            {
-                                best = current;
-                                bestScore = currentScore;
-                            }
+                            bestScore = Math.min(bestScore, currentScore);
                         }
                     }
                 }
             }
-            return best;
+            return bestScore;
         }
     }
 
 
-    private static int evaluate(Game game, Player player, boolean max)
+    private static int evaluate(Game game, Player player)
     {
         if (game.isGameOver())
         {
@@ -101,18 +99,7 @@ public class AI3
         }
         else
         {
-            int score = 0;
-            for (int x = 0; x < Game.DIM; x++) {
-                for (int y = 0; y < Game.DIM; y++) {
-                    if (game.getTile(x, y) == player) {
-                        score += MATRIX[x][y];
-                    }
-                    if (game.getTile(x, y) == player.getEnemy()) {
-                        score -= MATRIX[x][y];
-                    }
-                }
-            }
-            return score;
+            return game.getPositionalScore(player);
         }
     }
 
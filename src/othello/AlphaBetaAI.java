@@ -0,0 +1,1221 @@
+package othello;
+
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * A.I. using principal variation search, a negamax search with alpha-beta pruning.<br>
+ * With the evaluation of {@link AI}, it returns the same move as a full minimax search of the same depth, but visits
+ * far less nodes. Only the first move of a position is searched with the full window; all others are just tested
+ * against the best score so far with a null window, and searched again only if they turn out to be better.<br>
+ * With more than one thread, helper threads search the same root at slightly different depths, sharing the
+ * transposition table with the main thread (lazy SMP). Only the main thread's result is used; the helpers just fill
+ * the table.<br>
+ * Positions are evaluated by the {@link Patterns#getDefault() default pattern weights}, or like in {@link AI}, if
+ * there are none. The root may be searched by MTD(f) instead, see {@link Driver}. With few empty squares left, the
+ * game is solved by an {@link EndgameSolver} instead.
+ *
+ * @author yolo
+ */
+public class AlphaBetaAI implements AutoCloseable
+{
+
+    /**
+     * Score of a won game, before adding the final difference of pieces.<br>
+     * Higher than any score {@link #evaluate(Game, Player)} may return for an unfinished game.
+     */
+    static final int WIN = 1000000;
+
+    /**
+     * Bound for all scores.
+     */
+    static final int INFINITY = 2 * WIN;
+
+    /**
+     * Default size of the transposition table in megabytes.
+     */
+    public static final int DEFAULT_TABLE_SIZE = 16;
+
+    /**
+     * Half the width of the aspiration window, in units of {@link #evaluate(Game, Player)}.
+     */
+    static final int ASPIRATION_WINDOW = 250;
+
+    /**
+     * Maximum number of moves of a game, as every move fills one square.
+     */
+    private static final int MAX_HEIGHT = Game.DIM * Game.DIM;
+
+    /**
+     * Value of {@link #deadline}, if the search is not limited by time.
+     */
+    private static final long NO_DEADLINE = Deadline.NONE;
+
+    /**
+     * Number of nodes between two checks of the {@link #deadline}, minus one.
+     */
+    private static final long CHECK_INTERVAL = 1023L;
+
+    /**
+     * Transposition table, or {@code null}, if search results are not stored.
+     */
+    private final TranspositionTable table;
+
+    /**
+     * Search state of the main thread, followed by the ones of the helper threads.
+     */
+    private final Searcher[] searchers;
+
+    /**
+     * Runs the helper threads, or {@code null}, if there are none.
+     */
+    private final ExecutorService helpers;
+
+    /**
+     * Tells all threads to stop, as the main thread has finished or ran out of time.
+     */
+    private volatile boolean stop;
+
+    /**
+     * Time in {@link System#nanoTime()}, at which the current search has to stop.
+     */
+    private long deadline = NO_DEADLINE;
+
+    /**
+     * Tells if the current search ran out of time.<br>
+     * Its result has to be discarded then.
+     */
+    private volatile boolean aborted;
+
+    /**
+     * Driver of the root search.
+     */
+    private Driver driver = Driver.PVS;
+
+    /**
+     * Weights of the pattern evaluation, or {@code null}, if positions are evaluated by {@link AI#MATRIX}.
+     */
+    private Patterns patterns = Patterns.getDefault();
+
+    /**
+     * Principal variation of the last search.
+     */
+    private int[] principalVariation = new int[0];
+
+    /**
+     * Score of the best move of the last search.
+     */
+    private int score;
+
+    /**
+     * Opening book, or {@code null}, if every move is searched.
+     */
+    private OpeningBook book;
+
+    /**
+     * Solves the last moves of a game.
+     */
+    private final EndgameSolver solver = new EndgameSolver();
+
+    /**
+     * Maximum number of empty squares, at which the game is solved instead of searched.
+     */
+    private int endgameEmpties = EndgameSolver.DEFAULT_EMPTIES;
+
+    /**
+     * Statistics of the last search.
+     */
+    private SearchStatistics statistics = SearchStatistics.NONE;
+
+    /**
+     * Monitor, to which every search is reported, or {@code null}.
+     */
+    private SearchMonitor monitor;
+
+
+    /**
+     * Returns a new single threaded A.I. with a transposition table of {@link #DEFAULT_TABLE_SIZE} megabytes.
+     */
+    public AlphaBetaAI()
+    {
+        this(new TranspositionTable(DEFAULT_TABLE_SIZE, TranspositionTable.Replacement.DEPTH_PREFERRED));
+    }
+
+
+    /**
+     * Returns a new single threaded A.I.
+     *
+     * @param table transposition table, which is kept between searches, or {@code null} for none
+     */
+    public AlphaBetaAI(TranspositionTable table)
+    {
+        this(table, 1);
+    }
+
+
+    /**
+     * Returns a new A.I.
+     *
+     * @param table transposition table, which is kept between searches, or {@code null} for none
+     * @param threads number of searching threads, including the calling one; helper threads run until {@link #close()}
+     * @throws IllegalArgumentException if {@code threads} is less than {@code 1}, or if there are helper threads but
+     *             no table
+     * @throws IllegalStateException if the {@link Patterns#getDefault() default pattern weights} can't be read
+     */
+    public AlphaBetaAI(TranspositionTable table, int threads)
+    {
+        super();
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("threads has to be 1 or higher");
+        }
+        if ((threads > 1) && (table == null))
+        {
+            throw new IllegalArgumentException("helper threads need a transposition table");
+        }
+        this.table = table;
+        searchers = new Searcher[threads];
+        for (int i = 0; i < threads; i++)
+        {
+            searchers[i] = new Searcher(i);
+        }
+        if (threads > 1)
+        {
+            helpers = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "AlphaBetaAI helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        else
+        {
+            helpers = null;
+        }
+    }
+
+
+    /**
+     * Puts the best move found by a search of fixed depth.<br>
+     * Takes the move from the {@link OpeningBook}, if there is one for the position, and solves the game, if at most
+     * {@link #getEndgameEmpties()} squares are empty. The result is kept, see {@link #getScore()} and
+     * {@link #getPrincipalVariation()}.
+     *
+     * @param game game to move in
+     * @param ply search depth
+     * @return {@code game}
+     * @throws IllegalArgumentException if the game is already over, or if {@code ply} is lower than 1
+     */
+    public Game move(Game game, int ply)
+    {
+        if (game.isGameOver())
+        {
+            throw new IllegalArgumentException("game is already over");
+        }
+        if (ply < 1)
+        {
+            throw new IllegalArgumentException("ply has to be 1 or higher");
+        }
+        long begin = System.nanoTime();
+        start();
+        if (probe(game))
+        {
+            finish(begin, SearchStatistics.Source.BOOK, 0);
+        }
+        else if (solve(game, EndgameSolver.NO_DEADLINE))
+        {
+            finish(begin, SearchStatistics.Source.ENDGAME, game.getNumberOfFreeTiles());
+        }
+        else
+        {
+            int correctPly = ply > game.getNumberOfFreeTiles() ? game.getNumberOfFreeTiles() : ply;
+            if (driver == Driver.PVS)
+            {
+                score = search(game, correctPly, -INFINITY, INFINITY);
+                principalVariation = searchers[0].getPrincipalVariation();
+            }
+            else
+            {
+                int[] scores = new int[correctPly + 1];
+                for (int depth = 1; depth <= correctPly; depth++)
+                {
+                    scores[depth] = iterate(game, depth, scores);
+                }
+                score = scores[correctPly];
+            }
+            finish(begin, SearchStatistics.Source.SEARCH, correctPly);
+        }
+        int best = principalVariation[0];
+        game.put(best % Game.DIM, best / Game.DIM);
+        return game;
+    }
+
+
+    /**
+     * Searches one ply deeper at a time, until the time budget runs out.<br>
+     * Puts the best move of the deepest completed search. The first ply is always completed, even if the budget is
+     * already exceeded. If solving the endgame doesn't finish within the budget, the game is searched instead.
+     *
+     * @param game game to move in
+     * @param budget time budget for the whole move
+     * @return {@code game}
+     * @throws IllegalArgumentException if the game is already over, or if the budget is negative
+     */
+    public Game move(Game game, Duration budget)
+    {
+        if (game.isGameOver())
+        {
+            throw new IllegalArgumentException("game is already over");
+        }
+        if (budget.isNegative())
+        {
+            throw new IllegalArgumentException("budget must not be negative");
+        }
+        long start = System.nanoTime();
+        long end = Deadline.of(start, budget);
+        start();
+        if (probe(game))
+        {
+            finish(start, SearchStatistics.Source.BOOK, 0);
+        }
+        else if (solve(game, end))
+        {
+            finish(start, SearchStatistics.Source.ENDGAME, game.getNumberOfFreeTiles());
+        }
+        else
+        {
+            int completed = 1;
+            int[] scores = new int[game.getNumberOfFreeTiles() + 1];
+            scores[1] = iterate(game, 1, scores);
+            score = scores[1];
+            deadline = end;
+            try
+            {
+                for (int ply = 2; (ply <= game.getNumberOfFreeTiles()) && !Deadline.isPast(deadline); ply++)
+                {
+                    int score = iterate(game, ply, scores);
+                    if (aborted)
+                    {
+                        break;
+                    }
+                    scores[ply] = score;
+                    this.score = score;
+                    completed = ply;
+                }
+            }
+            finally
+            {
+                deadline = NO_DEADLINE;
+                aborted = false;
+            }
+            finish(start, SearchStatistics.Source.SEARCH, completed);
+        }
+        int best = principalVariation[0];
+        game.put(best % Game.DIM, best / Game.DIM);
+        return game;
+    }
+
+
+    /**
+     * Returns the principal variation of the last search.<br>
+     * This is the line of best play for both players, as far as it is known; passes are left out. After solving an
+     * endgame, it only holds the best move.
+     *
+     * @return bit indices {@code y * }{@link Game#DIM}{@code  + x} of the moves, starting with the best move
+     */
+    public int[] getPrincipalVariation()
+    {
+        return principalVariation.clone();
+    }
+
+
+    /**
+     * Returns the score of the best move of the last search, from the view of the player who moved.<br>
+     * After solving an endgame, this is {@link #WIN} plus the difference of pieces, like at the end of a search; after
+     * a book move, it is the score stored in the book.
+     *
+     * @return score of the best move
+     */
+    public int getScore()
+    {
+        return score;
+    }
+
+
+    /**
+     * Forgets the results of all previous searches, so the next search starts like the first one.
+     */
+    public void clear()
+    {
+        if (table != null)
+        {
+            table.clear();
+        }
+        solver.clear();
+    }
+
+
+    /**
+     * Returns the number of nodes visited by the last search, summed up over all threads.
+     *
+     * @return number of nodes
+     */
+    public long getNodes()
+    {
+        return statistics.getNodes();
+    }
+
+
+    /**
+     * Returns the statistics of the last search.<br>
+     * Counters of all threads are summed up; a search of the {@link Driver#MTDF} or with a time budget counts all
+     * steps of iterative deepening.
+     *
+     * @return statistics
+     */
+    public SearchStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+
+    /**
+     * Returns the monitor, to which every search is reported.
+     *
+     * @return monitor, or {@code null} if searches aren't reported
+     */
+    public SearchMonitor getMonitor()
+    {
+        return monitor;
+    }
+
+
+    /**
+     * Sets the monitor, to which every search is reported.
+     *
+     * @param monitor monitor, or {@code null} to not report searches
+     */
+    public void setMonitor(SearchMonitor monitor)
+    {
+        this.monitor = monitor;
+    }
+
+
+    /**
+     * Returns the maximum number of empty squares, at which the game is solved instead of searched.
+     *
+     * @return number of empty squares
+     */
+    public int getEndgameEmpties()
+    {
+        return endgameEmpties;
+    }
+
+
+    /**
+     * Sets the maximum number of empty squares, at which the game is solved instead of searched.
+     *
+     * @param endgameEmpties number of empty squares, {@code 0} to never solve
+     * @throws IllegalArgumentException if {@code endgameEmpties} is negative
+     */
+    public void setEndgameEmpties(int endgameEmpties)
+    {
+        if (endgameEmpties < 0)
+        {
+            throw new IllegalArgumentException("endgameEmpties must not be negative");
+        }
+        this.endgameEmpties = endgameEmpties;
+    }
+
+
+    /**
+     * Returns the driver of the root search.
+     *
+     * @return driver
+     */
+    public Driver getDriver()
+    {
+        return driver;
+    }
+
+
+    /**
+     * Sets the driver of the root search.
+     *
+     * @param driver driver
+     * @throws IllegalArgumentException if {@code driver} is {@code null}, or if it is {@link Driver#MTDF} and there
+     *             is no transposition table
+     */
+    public void setDriver(Driver driver)
+    {
+        if (driver == null)
+        {
+            throw new IllegalArgumentException("driver must not be null");
+        }
+        if ((driver == Driver.MTDF) && (table == null))
+        {
+            throw new IllegalArgumentException("MTD(f) needs a transposition table");
+        }
+        this.driver = driver;
+    }
+
+
+    /**
+     * Returns the weights of the pattern evaluation.
+     *
+     * @return weights, or {@code null}, if positions are evaluated by {@link AI#MATRIX}
+     */
+    public Patterns getPatterns()
+    {
+        return patterns;
+    }
+
+
+    /**
+     * Sets the weights of the pattern evaluation.<br>
+     * Clears the transposition table, as its scores are no longer valid.
+     *
+     * @param patterns weights, or {@code null} to evaluate positions by {@link AI#MATRIX}
+     */
+    public void setPatterns(Patterns patterns)
+    {
+        this.patterns = patterns;
+        if (table != null)
+        {
+            table.clear();
+        }
+    }
+
+
+    /**
+     * Returns the opening book.
+     *
+     * @return opening book, or {@code null}, if every move is searched
+     */
+    public OpeningBook getBook()
+    {
+        return book;
+    }
+
+
+    /**
+     * Sets the opening book, which is looked up before each search.
+     *
+     * @param book opening book, or {@code null} to search every move
+     */
+    public void setBook(OpeningBook book)
+    {
+        this.book = book;
+    }
+
+
+    /**
+     * Returns the transposition table.
+     *
+     * @return transposition table, or {@code null}, if there is none
+     */
+    public TranspositionTable getTable()
+    {
+        return table;
+    }
+
+
+    /**
+     * Returns the number of searching threads.
+     *
+     * @return number of threads, including the calling one
+     */
+    public int getThreads()
+    {
+        return searchers.length;
+    }
+
+
+    /**
+     * Stops the helper threads.<br>
+     * Afterwards, the A.I. must not search anymore, if it has more than one thread.
+     */
+    @Override
+    public void close()
+    {
+        if (helpers != null)
+        {
+            helpers.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Solves the game, if few enough squares are empty.
+     *
+     * @param game game to solve, is not changed
+     * @param deadline time in {@link System#nanoTime()}, at which solving has to stop, or
+     *            {@link EndgameSolver#NO_DEADLINE}
+     * @return {@code true}, if the game was solved before the deadline
+     * @throws CancellationException if the calling thread was interrupted
+     */
+    private boolean solve(Game game, long deadline)
+    {
+        if (game.getNumberOfFreeTiles() > endgameEmpties)
+        {
+            return false;
+        }
+        int difference;
+        try
+        {
+            difference = solver.solve(game, deadline);
+        }
+        catch (CancellationException e)
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                throw e;
+            }
+            return false;
+        }
+        score = (difference > 0) ? WIN + difference : (difference < 0) ? -WIN + difference : 0;
+        searchers[0].counters.add(solver.getCounters());
+        principalVariation = new int[] { solver.getBestMove() };
+        return true;
+    }
+
+
+    /**
+     * Looks up the game in the {@link #book}.
+     *
+     * @param game game to look up, is not changed
+     * @return {@code true}, if the book has a move
+     */
+    private boolean probe(Game game)
+    {
+        int move = (book == null) ? OpeningBook.NO_MOVE : book.getMove(game);
+        if (move == OpeningBook.NO_MOVE)
+        {
+            return false;
+        }
+        score = book.getScore(game);
+        principalVariation = new int[] { move };
+        return true;
+    }
+
+
+    /**
+     * Prepares a new move, by aging the transposition table and resetting all threads.
+     */
+    private void start()
+    {
+        if (table != null)
+        {
+            table.newSearch();
+        }
+        for (Searcher searcher : searchers)
+        {
+            searcher.clear();
+        }
+    }
+
+
+    /**
+     * Sums up the counters of all threads into the {@link #statistics} of the finished search, and reports them to the
+     * {@link #monitor}.
+     *
+     * @param begin {@link System#nanoTime()} at the start of the move
+     * @param source how the move was found
+     * @param depth depth of the deepest completed search
+     */
+    private void finish(long begin, SearchStatistics.Source source, int depth)
+    {
+        SearchCounters counters = new SearchCounters();
+        for (Searcher searcher : searchers)
+        {
+            counters.add(searcher.counters);
+        }
+        statistics = new SearchStatistics(source, depth, counters, System.nanoTime() - begin);
+        if (monitor != null)
+        {
+            monitor.record(statistics);
+        }
+    }
+
+
+    /**
+     * Runs one step of iterative deepening with the selected {@link Driver}, and updates the principal variation.
+     *
+     * @param game root position, is not changed
+     * @param ply search depth, including the root move
+     * @param scores scores of the previous steps, indexed by ply
+     * @return exact score; meaningless if {@link #aborted}
+     */
+    private int iterate(Game game, int ply, int[] scores)
+    {
+        int guess = (ply > 2) ? scores[ply - 2] : 0;
+        return (driver == Driver.PVS) ? aspiration(game, ply, guess) : mtdf(game, ply, guess);
+    }
+
+
+    /**
+     * Searches with an aspiration window.<br>
+     * From the third ply on, the search starts with a window of {@link #ASPIRATION_WINDOW} around the score of two
+     * plies before, as the score of the previous ply is biased towards the other player. If the score falls outside,
+     * the window is widened on that side and the search is repeated.
+     *
+     * @param game root position, is not changed
+     * @param ply search depth, including the root move
+     * @param guess score of two plies before
+     * @return exact score; meaningless if {@link #aborted}
+     */
+    private int aspiration(Game game, int ply, int guess)
+    {
+        int window = ASPIRATION_WINDOW;
+        int alpha = (ply > 2) ? guess - window : -INFINITY;
+        int beta = (ply > 2) ? guess + window : INFINITY;
+        while (true)
+        {
+            int score = search(game, ply, alpha, beta);
+            if (aborted)
+            {
+                return score;
+            }
+            if (score <= alpha)
+            {
+                window *= 4;
+                alpha = Math.max(score - window, -INFINITY);
+            }
+            else if (score >= beta)
+            {
+                window *= 4;
+                beta = Math.min(score + window, INFINITY);
+            }
+            else
+            {
+                principalVariation = searchers[0].getPrincipalVariation();
+                return score;
+            }
+        }
+    }
+
+
+    /**
+     * Searches with MTD(f).<br>
+     * Only null window searches are used, each of which tells if the score is below or above a bound. The bounds
+     * converge on the score; the transposition table keeps the work of the former searches. The best move is the one
+     * of the last search above a bound, and the rest of the principal variation is read from the table.
+     *
+     * @param game root position, is not changed
+     * @param ply search depth, including the root move
+     * @param guess first guess of the score
+     * @return exact score; meaningless if {@link #aborted}
+     */
+    private int mtdf(Game game, int ply, int guess)
+    {
+        int lower = -INFINITY;
+        int upper = INFINITY;
+        int score = guess;
+        int best = TranspositionTable.NO_MOVE;
+        while (lower < upper)
+        {
+            int beta = (score == lower) ? score + 1 : score;
+            score = search(game, ply, beta - 1, beta);
+            if (aborted)
+            {
+                return score;
+            }
+            if (score < beta)
+            {
+                upper = score;
+            }
+            else
+            {
+                lower = score;
+                best = searchers[0].getPrincipalVariation()[0];
+            }
+        }
+        principalVariation = line(game, best, ply);
+        return score;
+    }
+
+
+    /**
+     * Reads a principal variation from the transposition table.
+     *
+     * @param game root position, is not changed
+     * @param best bit index of the best move
+     * @param ply maximum length
+     * @return bit indices of the moves, starting with {@code best}
+     */
+    private int[] line(Game game, int best, int ply)
+    {
+        Game position = game.clone();
+        int[] line = new int[ply];
+        line[0] = best;
+        position.makeMove(best);
+        int length = 1;
+        while ((length < ply) && !position.isGameOver())
+        {
+            long entry = table.probe(position.getHash());
+            int move = (entry != 0L) ? TranspositionTable.move(entry) : TranspositionTable.NO_MOVE;
+            if ((move == TranspositionTable.NO_MOVE) || ((position.getMoves() & (1L << move)) == 0L))
+            {
+                break;
+            }
+            position.makeMove(move);
+            line[length++] = move;
+        }
+        return Arrays.copyOf(line, length);
+    }
+
+
+    /**
+     * Searches the root position with all threads.
+     *
+     * @param game root position, is not changed
+     * @param ply search depth, including the root move
+     * @param alpha lower bound
+     * @param beta upper bound
+     * @return score of the main thread, which is exact if it's inside {@code (alpha, beta)}; meaningless if
+     *         {@link #aborted}
+     */
+    private int search(Game game, int ply, int alpha, int beta)
+    {
+        stop = false;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 1; i < searchers.length; i++)
+        {
+            Searcher helper = searchers[i];
+            Game clone = game.clone();
+            futures.add(helpers.submit(() -> helper.help(clone, ply)));
+        }
+        try
+        {
+            return searchers[0].root(game.clone(), ply, alpha, beta);
+        }
+        finally
+        {
+            stop = true;
+            for (Future<?> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                catch (ExecutionException e)
+                {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Evaluates a position.
+     *
+     * @param game position
+     * @param player player to evaluate for
+     * @return
+     *         <ul>
+     *         <li>{@link #WIN} plus the difference of pieces, if the game is won by {@code player}</li>
+     *         <li>{@code -}{@link #WIN} plus the difference of pieces, if the game is lost by {@code player}</li>
+     *         <li>{@code 0}, if the game is drawn</li>
+     *         <li>the weighted difference of pieces by {@link AI#MATRIX}, if the game is not over</li>
+     *         </ul>
+     */
+    static int evaluate(Game game, Player player)
+    {
+        long own = game.getPieces(player);
+        long opp = game.getPieces(player.getEnemy());
+        if (game.isGameOver())
+        {
+            int difference = Long.bitCount(own) - Long.bitCount(opp);
+            return (difference > 0) ? WIN + difference : (difference < 0) ? -WIN + difference : 0;
+        }
+        return game.getPositionalScore(player);
+    }
+
+    /**
+     * Search state of one thread.
+     */
+    private class Searcher
+    {
+
+        /**
+         * {@code 0} for the main thread, the number of the helper otherwise.
+         */
+        private final int id;
+
+        /**
+         * Move ordering of this thread.
+         */
+        private final MoveOrdering ordering = new MoveOrdering();
+
+        /**
+         * Pattern indices of the searched position, only kept up to date if {@link #patterns} are set.
+         */
+        private final PatternState state = new PatternState();
+
+        /**
+         * Principal variations found below each height, indexed by height.
+         */
+        private final int[][] pv = new int[MAX_HEIGHT + 1][MAX_HEIGHT];
+
+        /**
+         * Lengths of {@link #pv}, indexed by height.
+         */
+        private final int[] pvLength = new int[MAX_HEIGHT + 1];
+
+        /**
+         * Counters of this thread in the last search, only written by this thread.
+         */
+        private final SearchCounters counters = new SearchCounters();
+
+
+        Searcher(int id)
+        {
+            super();
+            this.id = id;
+        }
+
+
+        void clear()
+        {
+            ordering.clear();
+            counters.clear();
+        }
+
+
+        /**
+         * Returns the principal variation of the last root search.
+         *
+         * @return bit indices of the moves
+         */
+        int[] getPrincipalVariation()
+        {
+            return Arrays.copyOf(pv[0], pvLength[0]);
+        }
+
+
+        /**
+         * Tells if the search has to be stopped.<br>
+         * The main thread stops all threads, once it runs out of time.
+         *
+         * @return {@code true}, if the search has to be stopped
+         */
+        private boolean isStopped()
+        {
+            if ((id == 0) && ((counters.nodes & CHECK_INTERVAL) == 0L) && Deadline.isPast(deadline))
+            {
+                aborted = true;
+                stop = true;
+            }
+            return stop;
+        }
+
+
+        /**
+         * Searches the root as a helper thread until the main thread has finished.<br>
+         * Every second helper starts one ply deeper than the main thread; after finishing, a helper searches one ply
+         * deeper again.
+         *
+         * @param game root position
+         * @param ply search depth of the main thread
+         */
+        void help(Game game, int ply)
+        {
+            for (int depth = ply + (id & 1); (depth <= game.getNumberOfFreeTiles()) && !isStopped(); depth++)
+            {
+                root(game, depth, -INFINITY, INFINITY);
+            }
+        }
+
+
+        /**
+         * Searches all moves of the root position.<br>
+         * Moves are tried in reverse scan order, and only a strictly better score replaces the best move, so ties are
+         * resolved like in {@link AI}.
+         *
+         * @param game root position, is restored before returning
+         * @param ply search depth, including the root move
+         * @param alpha lower bound
+         * @param beta upper bound
+         * @return score, which is exact if it's inside {@code (alpha, beta)}; meaningless if {@link #isStopped()}
+         */
+        int root(Game game, int ply, int alpha, int beta)
+        {
+            Player player = game.getCurrentPlayer();
+            long moves = game.getMoves();
+            if (patterns != null)
+            {
+                state.set(game);
+            }
+            pvLength[0] = 0;
+            int best = -INFINITY;
+            for (int x = Game.DIM - 1; x >= 0; x--)
+            {
+                for (int y = Game.DIM - 1; y >= 0; y--)
+                {
+                    int square = Bitboard.square(x, y);
+                    if ((moves & (1L << square)) != 0L)
+                    {
+                        long flips = makeMove(game, player, square);
+                        int score = pvs(game, player, ply - 1, alpha, beta, best, pvLength[0] == 0, 1);
+                        unmakeMove(game, player, square, flips);
+                        if (isStopped())
+                        {
+                            return best;
+                        }
+                        if ((pvLength[0] == 0) || (score > best))
+                        {
+                            best = score;
+                            updatePrincipalVariation(0, square, (score > alpha) && (score < beta));
+                            if (best >= beta)
+                            {
+                                return best;
+                            }
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+
+        /**
+         * Searches a move after it was made, with the full window if it is the first move, and with a null window
+         * otherwise.<br>
+         * If the null window search shows the move to be better, it is searched again with the full window.
+         *
+         * @param game position after the move, is restored before returning
+         * @param player player who made the move
+         * @param depth remaining depth
+         * @param alpha lower bound, from the view of {@code player}
+         * @param beta upper bound, from the view of {@code player}
+         * @param best best score of the other moves so far
+         * @param first {@code true}, if this is the first move
+         * @param height number of moves made since the root
+         * @return score from the view of {@code player}
+         */
+        private int pvs(Game game, Player player, int depth, int alpha, int beta, int best, boolean first, int height)
+        {
+            int bound = Math.max(alpha, best);
+            if (first)
+            {
+                return search(game, player, depth, bound, beta, height);
+            }
+            int score = search(game, player, depth, bound, bound + 1, height);
+            if ((score > bound) && (score < beta))
+            {
+                score = search(game, player, depth, bound, beta, height);
+            }
+            return score;
+        }
+
+
+        /**
+         * Puts a move in front of the principal variation found below it.
+         *
+         * @param height height of the move
+         * @param square bit index of the move
+         * @param exact {@code true}, if the score of the move is exact, so the line below it is known
+         */
+        private void updatePrincipalVariation(int height, int square, boolean exact)
+        {
+            int[] line = pv[height];
+            line[0] = square;
+            int length = exact ? pvLength[height + 1] : 0;
+            System.arraycopy(pv[height + 1], 0, line, 1, length);
+            pvLength[height] = length + 1;
+        }
+
+
+        /**
+         * Makes a move, and updates the pattern indices.
+         *
+         * @param game position
+         * @param player current player
+         * @param square bit index of the move
+         * @return mask of all turned pieces
+         */
+        private long makeMove(Game game, Player player, int square)
+        {
+            long flips = game.makeMove(square);
+            if (patterns != null)
+            {
+                state.move(player, square, flips);
+            }
+            return flips;
+        }
+
+
+        /**
+         * Takes back a move, and updates the pattern indices.
+         *
+         * @param game position
+         * @param player player who made the move
+         * @param square bit index of the move
+         * @param flips mask of all turned pieces
+         */
+        private void unmakeMove(Game game, Player player, int square, long flips)
+        {
+            game.unmakeMove(square, flips);
+            if (patterns != null)
+            {
+                state.unmove(player, square, flips);
+            }
+        }
+
+
+        /**
+         * Searches a position after a move of {@code player}.
+         *
+         * @param game position to search, is restored before returning
+         * @param player player who made the last move
+         * @param depth remaining depth
+         * @param alpha lower bound, from the view of {@code player}
+         * @param beta upper bound, from the view of {@code player}
+         * @param height number of moves made since the root
+         * @return score from the view of {@code player}
+         */
+        private int search(Game game, Player player, int depth, int alpha, int beta, int height)
+        {
+            return (game.getCurrentPlayer() == player) ? negamax(game, depth, alpha, beta, height)
+                    : -negamax(game, depth, -beta, -alpha, height);
+        }
+
+
+        /**
+         * Searches a position with alpha-beta pruning.<br>
+         * Scores from the transposition table only end the search of positions with a null window, so the principal
+         * variation is not cut short.
+         *
+         * @param game position to search, is restored before returning
+         * @param depth remaining depth
+         * @param alpha lower bound, from the view of the current player
+         * @param beta upper bound, from the view of the current player
+         * @param height number of moves made since the root
+         * @return score from the view of the current player, which is exact if it's inside {@code (alpha, beta)};
+         *         meaningless if {@link #isStopped()}
+         */
+        private int negamax(Game game, int depth, int alpha, int beta, int height)
+        {
+            counters.nodes++;
+            pvLength[height] = 0;
+            Player player = game.getCurrentPlayer();
+            if (game.isGameOver() || (depth == 0))
+            {
+                return ((patterns == null) || game.isGameOver()) ? evaluate(game, player)
+                        : state.evaluate(patterns, player, game.getNumberOfFreeTiles());
+            }
+            if (isStopped())
+            {
+                return 0;
+            }
+            long key = game.getHash();
+            int hashMove = TranspositionTable.NO_MOVE;
+            if (table != null)
+            {
+                long entry = table.probe(key);
+                counters.probes++;
+                if (entry != 0L)
+                {
+                    counters.hits++;
+                    hashMove = TranspositionTable.move(entry);
+                }
+                if ((entry != 0L) && (TranspositionTable.depth(entry) >= depth) && (beta - alpha == 1))
+                {
+                    int score = TranspositionTable.score(entry);
+                    switch (TranspositionTable.bound(entry))
+                    {
+                        case TranspositionTable.EXACT:
+                            return score;
+                        case TranspositionTable.LOWER:
+                            if (score >= beta)
+                            {
+                                return score;
+                            }
+                            break;
+                        case TranspositionTable.UPPER:
+                            if (score <= alpha)
+                            {
+                                return score;
+                            }
+                            break;
+                        default:
+                            throw new IllegalStateException();
+                    }
+                }
+            }
+            int best = -INFINITY;
+            int bestMove = TranspositionTable.NO_MOVE;
+            int count = ordering.rank(game, game.getMoves(), hashMove, height, depth);
+            counters.interiorNodes++;
+            for (int i = 0; i < count; i++)
+            {
+                int square = ordering.next(height, i, count);
+                long flips = makeMove(game, player, square);
+                int score = pvs(game, player, depth - 1, alpha, beta, best, i == 0, height + 1);
+                unmakeMove(game, player, square, flips);
+                if (score > best)
+                {
+                    if ((score > alpha) && (score < beta))
+                    {
+                        updatePrincipalVariation(height, square, true);
+                    }
+                    best = score;
+                    bestMove = square;
+                    if (best >= beta)
+                    {
+                        counters.cutoffs++;
+                        if (i == 0)
+                        {
+                            counters.firstMoveCutoffs++;
+                        }
+                        if (square != hashMove)
+                        {
+                            ordering.cutoff(player, square, height, depth);
+                        }
+                        break;
+                    }
+                }
+            }
+            if ((table != null) && !isStopped())
+            {
+                int bound = (best <= alpha) ? TranspositionTable.UPPER
+                        : (best >= beta) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+                table.store(key, best, depth, bound,
+                        (bound == TranspositionTable.UPPER) ? TranspositionTable.NO_MOVE : bestMove);
+            }
+            return best;
+        }
+    }
+
+
+    /**
+     * Strategies for driving the search of the root position.
+     */
+    public enum Driver
+    {
+        /**
+         * Principal variation search, with aspiration windows between the steps of iterative deepening.
+         */
+        PVS,
+
+        /**
+         * MTD(f), a series of null window searches converging on the score. Always deepens iteratively, and needs a
+         * transposition table.
+         */
+        MTDF;
+    }
+
+}
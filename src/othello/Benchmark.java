@@ -0,0 +1,301 @@
+package othello;
+
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+
+import com.sun.management.ThreadMXBean;
+
+
+/**
+ * Micro benchmarks of {@link Game} and the engines, on fixed opening, midgame and endgame positions.<br>
+ * Each benchmark is warmed up for {@value #WARMUP_ITERATIONS} iterations and then measured for
+ * {@value #MEASUREMENT_ITERATIONS} iterations of about {@value #ITERATION_MILLIS} ms each. It reports the throughput,
+ * the average time per operation with the 95% error over the iterations, and the bytes allocated per operation by all
+ * threads running before the measurement, as measured by {@link ThreadMXBean#getThreadAllocatedBytes(long[])}.<br>
+ * Results of operations are consumed, so the JIT can't remove them. Searches start with empty transposition tables,
+ * which are cleared outside of the measured time, as repeating a search would otherwise only measure table hits.<br>
+ * The engines never switch to the {@link EndgameSolver} here, so their benchmarks measure the search at the given
+ * depth on all positions; the solver is measured on its own.
+ *
+ * @author yolo
+ */
+public final class Benchmark
+{
+
+    /**
+     * Number of iterations, which are run before measuring.
+     */
+    private static final int WARMUP_ITERATIONS = 3;
+
+    /**
+     * Number of measured iterations.
+     */
+    private static final int MEASUREMENT_ITERATIONS = 5;
+
+    /**
+     * Minimum duration of an iteration in milliseconds.<br>
+     * An iteration runs at least one operation.
+     */
+    private static final long ITERATION_MILLIS = 500L;
+
+    /**
+     * Quantile of the Student's t-distribution for a 95% interval with {@link #MEASUREMENT_ITERATIONS}{@code  - 1}
+     * degrees of freedom.
+     */
+    private static final double T_95 = 2.776;
+
+    /**
+     * Seed of the random moves leading to the positions.
+     */
+    private static final long SEED = 0x42454E43L;
+
+    /**
+     * Number of moves leading to each position, by name.
+     */
+    private static final Map<String, Integer> POSITIONS = new LinkedHashMap<>();
+
+    static
+    {
+        POSITIONS.put("opening", 6);
+        POSITIONS.put("midgame", 30);
+        POSITIONS.put("endgame", 48);
+    }
+
+    /**
+     * Difficulties of the GUI, which are used as search depths.
+     */
+    private static final int[] DIFFICULTIES = { 1, 2, 3, 4, 5 };
+
+    /**
+     * Takes the results of all operations, so they are not optimized away.
+     */
+    private static volatile long sink;
+
+
+    private Benchmark()
+    {
+        super();
+    }
+
+
+    /**
+     * Returns the position after a number of random moves.
+     *
+     * @param moves number of moves
+     * @return position
+     */
+    static Game position(int moves)
+    {
+        Random random = new Random(SEED);
+        Game game = new Game();
+        for (int i = 0; (i < moves) && !game.isGameOver(); i++)
+        {
+            long squares = game.getMoves();
+            for (int k = random.nextInt(Long.bitCount(squares)); k > 0; k--)
+            {
+                squares &= squares - 1L;
+            }
+            int square = Long.numberOfTrailingZeros(squares);
+            game.put(square % Game.DIM, square / Game.DIM);
+        }
+        return game;
+    }
+
+
+    /**
+     * Runs one benchmark and prints its result.
+     *
+     * @param name name of the benchmark
+     * @param game position to run on
+     * @param operation operation, which must not change {@code game}
+     * @param setup runs before each operation without being measured, or {@code null}
+     */
+    private static void run(String name, Game game, ToLongFunction<Game> operation, Runnable setup)
+    {
+        ThreadMXBean threads = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+        {
+            iterate(game, operation, setup, new long[1]);
+        }
+        double[] nanosPerOperation = new double[MEASUREMENT_ITERATIONS];
+        long operations = 0L;
+        long nanos = 0L;
+        long[] ids = threads.getAllThreadIds();
+        long[] allocated = threads.getThreadAllocatedBytes(ids);
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++)
+        {
+            long[] time = new long[1];
+            long count = iterate(game, operation, setup, time);
+            long elapsed = time[0];
+            nanosPerOperation[i] = (double)elapsed / count;
+            operations += count;
+            nanos += elapsed;
+        }
+        long bytes = allocated(threads, ids, allocated);
+        double average = (double)nanos / operations;
+        double variance = 0.0;
+        for (double value : nanosPerOperation)
+        {
+            variance += (value - average) * (value - average);
+        }
+        double error = T_95 * Math.sqrt(variance / (MEASUREMENT_ITERATIONS - 1) / MEASUREMENT_ITERATIONS);
+        System.out.printf("%-32s %12.1f ops/s %14.1f +/- %10.1f ns/op %12.1f B/op%n", name, operations / (nanos / 1e9),
+                average, error, (double)bytes / operations);
+    }
+
+
+    /**
+     * Runs an operation for one iteration.<br>
+     * Without setup, the whole iteration is measured; with setup, each operation is measured on its own.
+     *
+     * @param game position to run on
+     * @param operation operation
+     * @param setup runs before each operation without being measured, or {@code null}
+     * @param time measured time in nanoseconds, is written to index {@code 0}
+     * @return number of operations run
+     */
+    private static long iterate(Game game, ToLongFunction<Game> operation, Runnable setup, long[] time)
+    {
+        long start = System.nanoTime();
+        long deadline = start + ITERATION_MILLIS * 1000000L;
+        long count = 0L;
+        long result = 0L;
+        long now;
+        if (setup == null)
+        {
+            do
+            {
+                result ^= operation.applyAsLong(game);
+                count++;
+                now = System.nanoTime();
+            }
+            while (now - deadline < 0L);
+            time[0] = now - start;
+        }
+        else
+        {
+            do
+            {
+                setup.run();
+                long before = System.nanoTime();
+                result ^= operation.applyAsLong(game);
+                now = System.nanoTime();
+                time[0] += now - before;
+                count++;
+            }
+            while (now - deadline < 0L);
+        }
+        sink ^= result;
+        return count;
+    }
+
+
+    /**
+     * Returns the bytes allocated by threads since a snapshot.<br>
+     * Threads, which ended in between, are left out.
+     *
+     * @param threads thread bean
+     * @param ids ids of the threads
+     * @param snapshot bytes allocated by the threads at the snapshot
+     * @return allocated bytes
+     */
+    private static long allocated(ThreadMXBean threads, long[] ids, long[] snapshot)
+    {
+        long[] allocated = threads.getThreadAllocatedBytes(ids);
+        long bytes = 0L;
+        for (int i = 0; i < ids.length; i++)
+        {
+            if ((allocated[i] >= 0L) && (snapshot[i] >= 0L))
+            {
+                bytes += allocated[i] - snapshot[i];
+            }
+        }
+        return bytes;
+    }
+
+
+    /**
+     * Runs all benchmarks, or the ones whose name matches a regular expression.<br>
+     * Names are like {@code Game.clone/midgame} or {@code AI.move(3)/endgame}.
+     *
+     * @param args optional regular expression
+     */
+    public static void main(String[] args)
+    {
+        Pattern filter = Pattern.compile((args.length > 0) ? args[0] : ".*");
+        AI ai = new AI(new ForkJoinPool(1));
+        AlphaBetaAI alphaBeta = new AlphaBetaAI();
+        EndgameSolver solver = new EndgameSolver();
+        ai.setEndgameEmpties(0);
+        alphaBeta.setEndgameEmpties(0);
+        Map<String, ToLongFunction<Game>> operations = new LinkedHashMap<>();
+        Map<String, Runnable> setups = new LinkedHashMap<>();
+        operations.put("Game.clone", game -> game.clone().getHash());
+        operations.put("Game.clone+put", game -> {
+            Game clone = game.clone();
+            int square = Long.numberOfTrailingZeros(game.getMoves());
+            clone.put(square % Game.DIM, square / Game.DIM);
+            return clone.getHash();
+        });
+        operations.put("Game.makeMove+unmakeMove", game -> {
+            int square = Long.numberOfTrailingZeros(game.getMoves());
+            long flips = game.makeMove(square);
+            game.unmakeMove(square, flips);
+            return flips;
+        });
+        operations.put("Game.getMoves", Game::getMoves);
+        operations.put("Game.getFlips", game -> {
+            long flips = 0L;
+            for (long squares = game.getMoves(); squares != 0L; squares &= squares - 1L)
+            {
+                int square = Long.numberOfTrailingZeros(squares);
+                flips ^= game.getFlips(square % Game.DIM, square / Game.DIM);
+            }
+            return flips;
+        });
+        operations.put("AI.evaluate", game -> ai.evaluate(game, game.getCurrentPlayer()));
+        operations.put("AlphaBetaAI.evaluate", game -> AlphaBetaAI.evaluate(game, game.getCurrentPlayer()));
+        for (int difficulty : DIFFICULTIES)
+        {
+            operations.put("AI.move(" + difficulty + ")", game -> ai.move(game.clone(), difficulty).getHash());
+            setups.put("AI.move(" + difficulty + ")", ai::clear);
+        }
+        for (int difficulty : DIFFICULTIES)
+        {
+            operations.put("AlphaBetaAI.move(" + difficulty + ")",
+                    game -> alphaBeta.move(game.clone(), difficulty).getHash());
+            setups.put("AlphaBetaAI.move(" + difficulty + ")", alphaBeta::clear);
+        }
+        operations.put("EndgameSolver.solve", solver::solve);
+        setups.put("EndgameSolver.solve", solver::clear);
+        boolean found = false;
+        for (Map.Entry<String, ToLongFunction<Game>> operation : operations.entrySet())
+        {
+            for (Map.Entry<String, Integer> position : POSITIONS.entrySet())
+            {
+                String name = operation.getKey() + "/" + position.getKey();
+                Game game = position(position.getValue());
+                // the solver only finishes with few empty squares
+                boolean solvable = !operation.getKey().startsWith("EndgameSolver")
+                        || (game.getNumberOfFreeTiles() <= EndgameSolver.DEFAULT_EMPTIES);
+                if (solvable && filter.matcher(name).find())
+                {
+                    found = true;
+                    Runnable setup = setups.get(operation.getKey());
+                    run(name, game, operation.getValue(), setup);
+                }
+            }
+        }
+        if (!found)
+        {
+            System.err.println("no benchmark matches " + filter);
+        }
+    }
+
+}
@@ -0,0 +1,322 @@
+package othello;
+
+
+/**
+ * Bit operations on othello boards stored as 64-bit masks.<br>
+ * Square {@code (x, y)} is stored in bit {@code y * }{@link Game#DIM}{@code  + x}.
+ *
+ * @author yolo
+ */
+final class Bitboard
+{
+
+    /**
+     * All squares except the ones with {@code x == 0}.
+     */
+    private static final long NOT_A_FILE = 0xFEFEFEFEFEFEFEFEL;
+
+    /**
+     * All squares except the ones with {@code x == }{@link Game#DIM}{@code  - 1}.
+     */
+    private static final long NOT_H_FILE = 0x7F7F7F7F7F7F7F7FL;
+
+    /**
+     * Shift amounts for E / W, S / N, SW / NE and SE / NW.
+     */
+    private static final int[] SHIFTS = { 1, 8, 7, 9 };
+
+    /**
+     * Wrap masks to apply after a left shift by {@link #SHIFTS}.
+     */
+    private static final long[] MASKS_LEFT = { NOT_A_FILE, -1L, NOT_H_FILE, NOT_A_FILE };
+
+    /**
+     * Wrap masks to apply after a right shift by {@link #SHIFTS}.
+     */
+    private static final long[] MASKS_RIGHT = { NOT_H_FILE, -1L, NOT_A_FILE, NOT_H_FILE };
+
+    /**
+     * Squares without a neighbour on the board, from which a left shift by {@link #SHIFTS} would come.
+     */
+    private static final long[] EDGES_LEFT = new long[SHIFTS.length];
+
+    /**
+     * Squares without a neighbour on the board, from which a right shift by {@link #SHIFTS} would come.
+     */
+    private static final long[] EDGES_RIGHT = new long[SHIFTS.length];
+
+    /**
+     * Number of symmetries of the board.<br>
+     * Symmetry {@code s} first transposes the board, if bit {@code 2} is set, then mirrors x, if bit {@code 0} is
+     * set, then mirrors y, if bit {@code 1} is set.
+     */
+    static final int SYMMETRIES = 8;
+
+    static
+    {
+        for (int i = 0; i < SHIFTS.length; i++)
+        {
+            EDGES_LEFT[i] = ~((-1L << SHIFTS[i]) & MASKS_LEFT[i]);
+            EDGES_RIGHT[i] = ~((-1L >>> SHIFTS[i]) & MASKS_RIGHT[i]);
+        }
+    }
+
+
+    private Bitboard()
+    {
+        super();
+    }
+
+
+    /**
+     * Returns the bit index of a square.
+     *
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @return bit index of the square
+     */
+    static int square(int x, int y)
+    {
+        return y * Game.DIM + x;
+    }
+
+
+    /**
+     * Returns all empty squares, on which {@code own} may put a piece.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the enemy player
+     * @return mask of all legal moves
+     */
+    static long moves(long own, long opp)
+    {
+        long empty = ~(own | opp);
+        long moves = 0L;
+        for (int i = 0; i < SHIFTS.length; i++)
+        {
+            int shift = SHIFTS[i];
+
+            long maskLeft = MASKS_LEFT[i];
+            long run = ((own << shift) & maskLeft) & opp;
+            run |= ((run << shift) & maskLeft) & opp;
+            run |= ((run << shift) & maskLeft) & opp;
+            run |= ((run << shift) & maskLeft) & opp;
+            run |= ((run << shift) & maskLeft) & opp;
+            run |= ((run << shift) & maskLeft) & opp;
+            moves |= ((run << shift) & maskLeft) & empty;
+
+            long maskRight = MASKS_RIGHT[i];
+            run = ((own >>> shift) & maskRight) & opp;
+            run |= ((run >>> shift) & maskRight) & opp;
+            run |= ((run >>> shift) & maskRight) & opp;
+            run |= ((run >>> shift) & maskRight) & opp;
+            run |= ((run >>> shift) & maskRight) & opp;
+            run |= ((run >>> shift) & maskRight) & opp;
+            moves |= ((run >>> shift) & maskRight) & empty;
+        }
+        return moves;
+    }
+
+
+    /**
+     * Returns the pieces, which would be turned by putting a piece of {@code own} on a square.<br>
+     * The square itself is not checked for being empty.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the enemy player
+     * @param square bit index of the square
+     * @return mask of all turned pieces, {@code 0}, if the move is not valid
+     */
+    static long flips(long own, long opp, int square)
+    {
+        long move = 1L << square;
+        long flips = 0L;
+        for (int i = 0; i < SHIFTS.length; i++)
+        {
+            int shift = SHIFTS[i];
+
+            long maskLeft = MASKS_LEFT[i];
+            long run = 0L;
+            long next = (move << shift) & maskLeft;
+            while ((next & opp) != 0L)
+            {
+                run |= next;
+                next = (next << shift) & maskLeft;
+            }
+            if ((next & own) != 0L)
+            {
+                flips |= run;
+            }
+
+            long maskRight = MASKS_RIGHT[i];
+            run = 0L;
+            next = (move >>> shift) & maskRight;
+            while ((next & opp) != 0L)
+            {
+                run |= next;
+                next = (next >>> shift) & maskRight;
+            }
+            if ((next & own) != 0L)
+            {
+                flips |= run;
+            }
+        }
+        return flips;
+    }
+
+
+    /**
+     * Returns all squares next to a square of a mask, in any of the 8 directions.
+     *
+     * @param squares mask of squares
+     * @return mask of all neighbours, which may include squares of {@code squares}
+     */
+    static long neighbours(long squares)
+    {
+        long neighbours = 0L;
+        for (int i = 0; i < SHIFTS.length; i++)
+        {
+            neighbours |= ((squares << SHIFTS[i]) & MASKS_LEFT[i]) | ((squares >>> SHIFTS[i]) & MASKS_RIGHT[i]);
+        }
+        return neighbours;
+    }
+
+
+    /**
+     * Returns pieces, which can never be turned.<br>
+     * A piece is stable, if in each of the 4 lines through it, the line is full, or the piece is next to the edge of
+     * the board or to a stable piece of the same player. This finds most, but not all stable pieces.
+     *
+     * @param own pieces to check
+     * @param opp pieces of the enemy player
+     * @return mask of all stable pieces of {@code own}
+     */
+    static long stable(long own, long opp)
+    {
+        // one local per line direction, as this runs in every evaluation
+        long filled = own | opp;
+        long full0 = full(filled, 0);
+        long full1 = full(filled, 1);
+        long full2 = full(filled, 2);
+        long full3 = full(filled, 3);
+        long stable = 0L;
+        long previous;
+        do
+        {
+            previous = stable;
+            stable = own & anchored(previous, full0, 0) & anchored(previous, full1, 1) & anchored(previous, full2, 2)
+                    & anchored(previous, full3, 3);
+        }
+        while (stable != previous);
+        return stable;
+    }
+
+
+    /**
+     * Returns the squares, whose line in one direction is full.
+     *
+     * @param filled mask of all pieces
+     * @param direction index into {@link #SHIFTS}
+     * @return mask of squares of {@code filled} on full lines
+     */
+    private static long full(long filled, int direction)
+    {
+        long full = filled;
+        for (int k = 1; k < Game.DIM; k++)
+        {
+            full &= (((full << SHIFTS[direction]) & MASKS_LEFT[direction]) | EDGES_LEFT[direction])
+                    & (((full >>> SHIFTS[direction]) & MASKS_RIGHT[direction]) | EDGES_RIGHT[direction]);
+        }
+        return full;
+    }
+
+
+    /**
+     * Returns the squares, which can't be turned along one direction.
+     *
+     * @param stable mask of pieces known to be stable
+     * @param full mask of squares on full lines in the direction
+     * @param direction index into {@link #SHIFTS}
+     * @return mask of squares on a full line, next to the edge, or next to a stable piece
+     */
+    private static long anchored(long stable, long full, int direction)
+    {
+        return full | ((stable << SHIFTS[direction]) & MASKS_LEFT[direction]) | EDGES_LEFT[direction]
+                | ((stable >>> SHIFTS[direction]) & MASKS_RIGHT[direction]) | EDGES_RIGHT[direction];
+    }
+
+
+    /**
+     * Applies a symmetry to a mask.
+     *
+     * @param squares mask of squares
+     * @param symmetry symmetry, in range {@code [0, }{@link #SYMMETRIES}{@code )}
+     * @return transformed mask
+     */
+    static long transform(long squares, int symmetry)
+    {
+        if ((symmetry & 4) != 0)
+        {
+            long t = 0x0F0F0F0F00000000L & (squares ^ (squares << 28));
+            squares ^= t ^ (t >>> 28);
+            t = 0x3333000033330000L & (squares ^ (squares << 14));
+            squares ^= t ^ (t >>> 14);
+            t = 0x5500550055005500L & (squares ^ (squares << 7));
+            squares ^= t ^ (t >>> 7);
+        }
+        if ((symmetry & 1) != 0)
+        {
+            squares = ((squares >>> 1) & 0x5555555555555555L) | ((squares & 0x5555555555555555L) << 1);
+            squares = ((squares >>> 2) & 0x3333333333333333L) | ((squares & 0x3333333333333333L) << 2);
+            squares = ((squares >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((squares & 0x0F0F0F0F0F0F0F0FL) << 4);
+        }
+        if ((symmetry & 2) != 0)
+        {
+            squares = Long.reverseBytes(squares);
+        }
+        return squares;
+    }
+
+
+    /**
+     * Applies a symmetry to a square.
+     *
+     * @param square bit index of the square
+     * @param symmetry symmetry, in range {@code [0, }{@link #SYMMETRIES}{@code )}
+     * @return bit index of the transformed square
+     */
+    static int transform(int square, int symmetry)
+    {
+        int x = square % Game.DIM;
+        int y = square / Game.DIM;
+        if ((symmetry & 4) != 0)
+        {
+            int t = x;
+            x = y;
+            y = t;
+        }
+        if ((symmetry & 1) != 0)
+        {
+            x = Game.DIM - 1 - x;
+        }
+        if ((symmetry & 2) != 0)
+        {
+            y = Game.DIM - 1 - y;
+        }
+        return square(x, y);
+    }
+
+
+    /**
+     * Returns the symmetry, which takes back another one.<br>
+     * Transposing swaps the mirror of x with the one of y, so these bits are swapped for transposing symmetries.
+     *
+     * @param symmetry symmetry, in range {@code [0, }{@link #SYMMETRIES}{@code )}
+     * @return inverse symmetry
+     */
+    static int inverse(int symmetry)
+    {
+        return ((symmetry & 4) == 0) ? symmetry : 4 | ((symmetry & 1) << 1) | ((symmetry & 2) >>> 1);
+    }
+
+}
@@ -0,0 +1,59 @@
+package othello;
+
+
+import java.time.Duration;
+
+
+/**
+ * Deadlines of time limited searches, as times in {@link System#nanoTime()}.<br>
+ * Times are only compared by their difference, so they stay valid when {@link System#nanoTime()} overflows.
+ *
+ * @author yolo
+ */
+final class Deadline
+{
+
+    /**
+     * Deadline, if a search is not limited by time.
+     */
+    static final long NONE = Long.MAX_VALUE;
+
+    /**
+     * Longest time budget, which has a deadline.<br>
+     * Differences of {@link System#nanoTime()} overflow beyond, so longer budgets are not limited by time.
+     */
+    private static final Duration MAX_BUDGET = Duration.ofNanos(Long.MAX_VALUE / 2);
+
+
+    private Deadline()
+    {
+        super();
+    }
+
+
+    /**
+     * Returns the deadline of a time budget.<br>
+     * Never overflows, as budgets of about 146 years or more have no deadline.
+     *
+     * @param start time in {@link System#nanoTime()}, at which the budget starts
+     * @param budget time budget, must not be negative
+     * @return time in {@link System#nanoTime()}, at which the budget runs out, or {@link #NONE}
+     */
+    static long of(long start, Duration budget)
+    {
+        return (budget.compareTo(MAX_BUDGET) >= 0) ? NONE : start + budget.toNanos();
+    }
+
+
+    /**
+     * Tells if a deadline has passed.
+     *
+     * @param deadline time in {@link System#nanoTime()}, or {@link #NONE}
+     * @return {@code true}, if the deadline has passed, never for {@link #NONE}
+     */
+    static boolean isPast(long deadline)
+    {
+        return (deadline != NONE) && (System.nanoTime() - deadline > 0L);
+    }
+
+}
@@ -0,0 +1,556 @@
+package othello;
+
+
+import java.util.concurrent.CancellationException;
+
+
+/**
+ * Solves othello endgames exactly.<br>
+ * Searches all moves until the end of the game and returns the final difference of pieces under perfect play. Works
+ * on the bitboards directly, without any {@link Game} objects, to reach millions of nodes per second.<br>
+ * Moves are ordered by the mobility of the enemy while many squares are empty, and by parity afterwards: squares in
+ * regions with an odd number of empty squares are tried first, as the last move in a region is usually an advantage.
+ * The last few squares are solved by dedicated code, which tests the empty squares directly instead of generating
+ * moves. Positions with many empty squares are stored in a private {@link TranspositionTable}.
+ *
+ * @author yolo
+ */
+public class EndgameSolver
+{
+
+    /**
+     * Default number of empty squares, below which the A.I.s switch to the solver.
+     */
+    public static final int DEFAULT_EMPTIES = 18;
+
+    /**
+     * Deadline, if solving is not limited by time.
+     */
+    public static final long NO_DEADLINE = Deadline.NONE;
+
+    /**
+     * Number of nodes between two checks of the deadline and of interrupts, minus one.
+     */
+    private static final long CHECK_INTERVAL = 4095L;
+
+    /**
+     * Size of the transposition table in megabytes.
+     */
+    private static final int TABLE_SIZE = 8;
+
+    /**
+     * Minimum number of empty squares to use the transposition table.
+     */
+    private static final int HASH_EMPTIES = 10;
+
+    /**
+     * Minimum number of empty squares to order moves by the mobility of the enemy.
+     */
+    private static final int FASTEST_FIRST_EMPTIES = 7;
+
+    /**
+     * Maximum number of empty squares to solve by testing the empty squares directly.
+     */
+    private static final int SMALL_EMPTIES = 4;
+
+    /**
+     * Bound for all scores.
+     */
+    private static final int INFINITY = Game.DIM * Game.DIM + 1;
+
+    /**
+     * The four quadrants of the board.
+     */
+    private static final long[] QUADRANTS = { 0x000000000F0F0F0FL, 0x00000000F0F0F0F0L, 0x0F0F0F0F00000000L,
+                                              0xF0F0F0F000000000L };
+
+    /**
+     * Maximum number of moves of a position, one per square, as reachable positions can have more than 32 moves.
+     */
+    private static final int MAX_MOVES = Game.DIM * Game.DIM;
+
+    /**
+     * Rank of the hash move.
+     */
+    private static final int RANK_HASH = Integer.MAX_VALUE;
+
+    /**
+     * Results of positions with at least {@link #HASH_EMPTIES} empty squares, which are kept between solves.
+     */
+    private final TranspositionTable table = new TranspositionTable(TABLE_SIZE,
+            TranspositionTable.Replacement.DEPTH_PREFERRED);
+
+    /**
+     * Moves to order, indexed by number of empty squares.
+     */
+    private final int[][] moves = new int[Game.DIM * Game.DIM + 1][MAX_MOVES];
+
+    /**
+     * Ranks of {@link #moves}, indexed by number of empty squares.
+     */
+    private final int[][] ranks = new int[Game.DIM * Game.DIM + 1][MAX_MOVES];
+
+    /**
+     * Best move found by the last call of {@link #solve(Game)}.
+     */
+    private int bestMove = TranspositionTable.NO_MOVE;
+
+    /**
+     * Number of nodes visited by the last call of {@link #solve(Game)}.
+     */
+    private long nodes;
+
+    /**
+     * Time in {@link System#nanoTime()}, at which the current solve has to stop, or {@link #NO_DEADLINE}.
+     */
+    private long deadline = NO_DEADLINE;
+
+    /**
+     * Number of transposition table probes of the last call of {@link #solve(Game)}.
+     */
+    private long probes;
+
+    /**
+     * Number of {@link #probes}, which found an entry.
+     */
+    private long hits;
+
+
+    /**
+     * Solves a game.
+     *
+     * @param game game to solve, is not changed
+     * @return final difference of pieces from the view of the current player, if both players play perfectly
+     * @throws IllegalArgumentException if the game is already over
+     * @throws CancellationException if the calling thread is interrupted, the interrupt status is kept
+     */
+    public int solve(Game game)
+    {
+        return solve(game, NO_DEADLINE);
+    }
+
+
+    /**
+     * Solves a game, unless it takes too long.<br>
+     * The deadline and the interrupt status of the calling thread are checked every few thousand nodes; results of
+     * finished subtrees stay in the table, so solving again after a stop is faster.
+     *
+     * @param game game to solve, is not changed
+     * @param deadline time in {@link System#nanoTime()}, at which solving has to stop, or {@link #NO_DEADLINE}
+     * @return final difference of pieces from the view of the current player, if both players play perfectly
+     * @throws IllegalArgumentException if the game is already over
+     * @throws CancellationException if the deadline passes, or if the calling thread is interrupted; the interrupt
+     *             status is kept
+     */
+    public int solve(Game game, long deadline)
+    {
+        if (game.isGameOver())
+        {
+            throw new IllegalArgumentException("game is already over");
+        }
+        this.deadline = deadline;
+        Player player = game.getCurrentPlayer();
+        long own = game.getPieces(player);
+        long opp = game.getPieces(player.getEnemy());
+        table.newSearch();
+        nodes = 1L;
+        probes = 0L;
+        hits = 0L;
+        bestMove = TranspositionTable.NO_MOVE;
+        int best = -INFINITY;
+        int empties = Long.bitCount(~(own | opp));
+        int count = rank(own, opp, Bitboard.moves(own, opp), empties, TranspositionTable.NO_MOVE);
+        for (int i = 0; i < count; i++)
+        {
+            int square = next(empties, i, count);
+            long flips = Bitboard.flips(own, opp, square);
+            long nextOwn = opp & ~flips;
+            long nextOpp = own | flips | (1L << square);
+            int score;
+            if (i == 0)
+            {
+                score = -solve(nextOwn, nextOpp, -INFINITY, INFINITY, false);
+            }
+            else
+            {
+                score = -solve(nextOwn, nextOpp, -best - 1, -best, false);
+                if (score > best)
+                {
+                    score = -solve(nextOwn, nextOpp, -INFINITY, -score, false);
+                }
+            }
+            if (score > best)
+            {
+                best = score;
+                bestMove = square;
+            }
+        }
+        return best;
+    }
+
+
+    /**
+     * Returns the best move found by the last call of {@link #solve(Game)}.
+     *
+     * @return bit index {@code y * }{@link Game#DIM}{@code  + x} of the move
+     */
+    public int getBestMove()
+    {
+        return bestMove;
+    }
+
+
+    /**
+     * Returns the number of nodes visited by the last call of {@link #solve(Game)}.
+     *
+     * @return number of nodes
+     */
+    public long getNodes()
+    {
+        return nodes;
+    }
+
+
+    /**
+     * Returns the counters of the last call of {@link #solve(Game)}.
+     *
+     * @return new counters of the nodes, probes and hits
+     */
+    SearchCounters getCounters()
+    {
+        SearchCounters counters = new SearchCounters();
+        counters.nodes = nodes;
+        counters.probes = probes;
+        counters.hits = hits;
+        return counters;
+    }
+
+
+    /**
+     * Tells if solving has to stop, because the deadline passed or the calling thread was interrupted.
+     *
+     * @return {@code true}, if solving has to stop
+     */
+    private boolean isStopped()
+    {
+        return Thread.currentThread().isInterrupted() || Deadline.isPast(deadline);
+    }
+
+
+    /**
+     * Forgets the results of all previous solves.
+     */
+    public void clear()
+    {
+        table.clear();
+    }
+
+
+    /**
+     * Solves a position.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the enemy player
+     * @param alpha lower bound
+     * @param beta upper bound
+     * @param passed {@code true}, if the enemy player had to pass
+     * @return final difference of pieces from the view of the player to move, which is exact if it's inside
+     *         {@code (alpha, beta)}
+     */
+    private int solve(long own, long opp, int alpha, int beta, boolean passed)
+    {
+        nodes++;
+        if (((nodes & CHECK_INTERVAL) == 0L) && isStopped())
+        {
+            throw new CancellationException("solve was stopped");
+        }
+        long empty = ~(own | opp);
+        int empties = Long.bitCount(empty);
+        if (empties == 1)
+        {
+            return solve1(own, opp, Long.numberOfTrailingZeros(empty));
+        }
+        if (empties <= SMALL_EMPTIES)
+        {
+            return solveSmall(own, opp, empty, alpha, beta, passed);
+        }
+        long moves = Bitboard.moves(own, opp);
+        if (moves == 0L)
+        {
+            if (passed)
+            {
+                return Long.bitCount(own) - Long.bitCount(opp);
+            }
+            return -solve(opp, own, -beta, -alpha, true);
+        }
+        long key = 0L;
+        int hashMove = TranspositionTable.NO_MOVE;
+        if (empties >= HASH_EMPTIES)
+        {
+            key = hash(own, opp);
+            long entry = table.probe(key);
+            probes++;
+            if (entry != 0L)
+            {
+                hits++;
+                hashMove = TranspositionTable.move(entry);
+                int score = TranspositionTable.score(entry);
+                switch (TranspositionTable.bound(entry))
+                {
+                    case TranspositionTable.EXACT:
+                        return score;
+                    case TranspositionTable.LOWER:
+                        if (score >= beta)
+                        {
+                            return score;
+                        }
+                        break;
+                    case TranspositionTable.UPPER:
+                        if (score <= alpha)
+                        {
+                            return score;
+                        }
+                        break;
+                    default:
+                        throw new IllegalStateException();
+                }
+            }
+        }
+        int best = -INFINITY;
+        int bestMove = TranspositionTable.NO_MOVE;
+        int count = rank(own, opp, moves, empties, hashMove);
+        for (int i = 0; i < count; i++)
+        {
+            int square = next(empties, i, count);
+            long flips = Bitboard.flips(own, opp, square);
+            long nextOwn = opp & ~flips;
+            long nextOpp = own | flips | (1L << square);
+            int bound = Math.max(alpha, best);
+            int score;
+            if (i == 0)
+            {
+                score = -solve(nextOwn, nextOpp, -beta, -bound, false);
+            }
+            else
+            {
+                score = -solve(nextOwn, nextOpp, -bound - 1, -bound, false);
+                if ((score > bound) && (score < beta))
+                {
+                    score = -solve(nextOwn, nextOpp, -beta, -score, false);
+                }
+            }
+            if (score > best)
+            {
+                best = score;
+                bestMove = square;
+                if (best >= beta)
+                {
+                    break;
+                }
+            }
+        }
+        if (empties >= HASH_EMPTIES)
+        {
+            int bound = (best <= alpha) ? TranspositionTable.UPPER
+                    : (best >= beta) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(key, best, empties, bound,
+                    (bound == TranspositionTable.UPPER) ? TranspositionTable.NO_MOVE : bestMove);
+        }
+        return best;
+    }
+
+
+    /**
+     * Solves a position with few empty squares, by testing the empty squares directly in parity order.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the enemy player
+     * @param empty mask of all empty squares
+     * @param alpha lower bound
+     * @param beta upper bound
+     * @param passed {@code true}, if the enemy player had to pass
+     * @return final difference of pieces from the view of the player to move, which is exact if it's inside
+     *         {@code (alpha, beta)}
+     */
+    private int solveSmall(long own, long opp, long empty, int alpha, int beta, boolean passed)
+    {
+        long odd = oddQuadrants(empty);
+        int best = -INFINITY;
+        for (long squares = empty & odd; squares != 0L; squares &= squares - 1L)
+        {
+            int square = Long.numberOfTrailingZeros(squares);
+            long flips = Bitboard.flips(own, opp, square);
+            if (flips != 0L)
+            {
+                int score = -solve(opp & ~flips, own | flips | (1L << square), -beta, -Math.max(alpha, best), false);
+                if (score > best)
+                {
+                    best = score;
+                    if (best >= beta)
+                    {
+                        return best;
+                    }
+                }
+            }
+        }
+        for (long squares = empty & ~odd; squares != 0L; squares &= squares - 1L)
+        {
+            int square = Long.numberOfTrailingZeros(squares);
+            long flips = Bitboard.flips(own, opp, square);
+            if (flips != 0L)
+            {
+                int score = -solve(opp & ~flips, own | flips | (1L << square), -beta, -Math.max(alpha, best), false);
+                if (score > best)
+                {
+                    best = score;
+                    if (best >= beta)
+                    {
+                        return best;
+                    }
+                }
+            }
+        }
+        if (best == -INFINITY)
+        {
+            if (passed)
+            {
+                return Long.bitCount(own) - Long.bitCount(opp);
+            }
+            return -solveSmall(opp, own, empty, -beta, -alpha, true);
+        }
+        return best;
+    }
+
+
+    /**
+     * Solves a position with one empty square.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the enemy player
+     * @param square bit index of the empty square
+     * @return final difference of pieces from the view of the player to move
+     */
+    private int solve1(long own, long opp, int square)
+    {
+        int difference = Long.bitCount(own) - Long.bitCount(opp);
+        int flips = Long.bitCount(Bitboard.flips(own, opp, square));
+        if (flips != 0)
+        {
+            return difference + 2 * flips + 1;
+        }
+        flips = Long.bitCount(Bitboard.flips(opp, own, square));
+        if (flips != 0)
+        {
+            return difference - 2 * flips - 1;
+        }
+        return difference;
+    }
+
+
+    /**
+     * Ranks all moves of a position.<br>
+     * The moves have to be fetched with {@link #next(int, int, int)} afterwards.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the enemy player
+     * @param moves mask of all valid moves
+     * @param empties number of empty squares
+     * @param hashMove best move stored in the transposition table, or {@link TranspositionTable#NO_MOVE}
+     * @return number of moves
+     */
+    private int rank(long own, long opp, long moves, int empties, int hashMove)
+    {
+        int[] list = this.moves[empties];
+        int[] ranks = this.ranks[empties];
+        long odd = oddQuadrants(~(own | opp));
+        int count = 0;
+        for (; moves != 0L; moves &= moves - 1L)
+        {
+            int square = Long.numberOfTrailingZeros(moves);
+            long move = 1L << square;
+            int rank = ((odd & move) != 0L) ? 1 : 0;
+            if (square == hashMove)
+            {
+                rank = RANK_HASH;
+            }
+            else if (empties >= FASTEST_FIRST_EMPTIES)
+            {
+                long flips = Bitboard.flips(own, opp, square);
+                rank -= 2 * Long.bitCount(Bitboard.moves(opp & ~flips, own | flips | move));
+            }
+            list[count] = square;
+            ranks[count] = rank;
+            count++;
+        }
+        return count;
+    }
+
+
+    /**
+     * Returns the best ranked move, which was not returned yet.
+     *
+     * @param empties number of empty squares
+     * @param index number of moves already returned
+     * @param count number of moves returned by {@link #rank(long, long, long, int, int)}
+     * @return bit index of the move
+     */
+    private int next(int empties, int index, int count)
+    {
+        int[] list = moves[empties];
+        int[] ranks = this.ranks[empties];
+        int best = index;
+        for (int i = index + 1; i < count; i++)
+        {
+            if (ranks[i] > ranks[best])
+            {
+                best = i;
+            }
+        }
+        int square = list[best];
+        int rank = ranks[best];
+        list[best] = list[index];
+        ranks[best] = ranks[index];
+        list[index] = square;
+        ranks[index] = rank;
+        return square;
+    }
+
+
+    /**
+     * Hashes a position for the transposition table.
+     *
+     * @param own pieces of the player to move
+     * @param opp pieces of the enemy player
+     * @return hash of the position
+     */
+    private static long hash(long own, long opp)
+    {
+        long hash = own * 0x9E3779B97F4A7C15L + Long.rotateLeft(opp, 32) * 0xC2B2AE3D27D4EB4FL;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+
+    /**
+     * Returns all quadrants with an odd number of empty squares.
+     *
+     * @param empty mask of all empty squares
+     * @return union of all quadrants with an odd number of empty squares
+     */
+    private static long oddQuadrants(long empty)
+    {
+        long odd = 0L;
+        for (long quadrant : QUADRANTS)
+        {
+            if ((Long.bitCount(empty & quadrant) & 1) != 0)
+            {
+                odd |= quadrant;
+            }
+        }
+        return odd;
+    }
+
+}
@@ -0,0 +1,192 @@
+package othello;
+
+
+/**
+ * Weights of evaluation features, which are calculated from the bitboards.<br>
+ * Each feature is counted for both players, and the count of the enemy is subtracted from the own one:
+ * <ul>
+ * <li>mobility: number of valid moves</li>
+ * <li>potential mobility: number of empty squares next to a piece of the enemy</li>
+ * <li>frontier: number of own pieces next to an empty square</li>
+ * <li>stable: number of own pieces, which can never be turned</li>
+ * </ul>
+ * Features with a weight of {@code 0} are not calculated at all, so they cost nothing.
+ *
+ * @author yolo
+ */
+public final class Features
+{
+
+    /**
+     * Weights of all zero, which evaluate every position as {@code 0}.
+     */
+    public static final Features NONE = new Features(0, 0, 0, 0);
+
+    /**
+     * Weight of the mobility.
+     */
+    private final int mobility;
+
+    /**
+     * Weight of the potential mobility.
+     */
+    private final int potentialMobility;
+
+    /**
+     * Weight of the frontier, usually negative.
+     */
+    private final int frontier;
+
+    /**
+     * Weight of the stable pieces.
+     */
+    private final int stable;
+
+
+    /**
+     * Returns new weights.
+     *
+     * @param mobility weight of the mobility
+     * @param potentialMobility weight of the potential mobility
+     * @param frontier weight of the frontier, usually negative
+     * @param stable weight of the stable pieces
+     */
+    public Features(int mobility, int potentialMobility, int frontier, int stable)
+    {
+        super();
+        this.mobility = mobility;
+        this.potentialMobility = potentialMobility;
+        this.frontier = frontier;
+        this.stable = stable;
+    }
+
+
+    /**
+     * Evaluates a position.
+     *
+     * @param game position
+     * @param player player to evaluate for
+     * @return weighted sum of the differences of all features, from the view of {@code player}
+     */
+    public int evaluate(Game game, Player player)
+    {
+        long own = game.getPieces(player);
+        long opp = game.getPieces(player.getEnemy());
+        int score = 0;
+        if (mobility != 0)
+        {
+            score += mobility * (mobility(own, opp) - mobility(opp, own));
+        }
+        if (potentialMobility != 0)
+        {
+            score += potentialMobility * (potentialMobility(own, opp) - potentialMobility(opp, own));
+        }
+        if (frontier != 0)
+        {
+            score += frontier * (frontier(own, opp) - frontier(opp, own));
+        }
+        if (stable != 0)
+        {
+            score += stable * (stable(own, opp) - stable(opp, own));
+        }
+        return score;
+    }
+
+
+    /**
+     * Returns the weight of the mobility.
+     *
+     * @return weight
+     */
+    public int getMobility()
+    {
+        return mobility;
+    }
+
+
+    /**
+     * Returns the weight of the potential mobility.
+     *
+     * @return weight
+     */
+    public int getPotentialMobility()
+    {
+        return potentialMobility;
+    }
+
+
+    /**
+     * Returns the weight of the frontier.
+     *
+     * @return weight
+     */
+    public int getFrontier()
+    {
+        return frontier;
+    }
+
+
+    /**
+     * Returns the weight of the stable pieces.
+     *
+     * @return weight
+     */
+    public int getStable()
+    {
+        return stable;
+    }
+
+
+    /**
+     * Counts the valid moves.
+     *
+     * @param own pieces of the player to count for
+     * @param opp pieces of the enemy player
+     * @return number of valid moves of {@code own}
+     */
+    static int mobility(long own, long opp)
+    {
+        return Long.bitCount(Bitboard.moves(own, opp));
+    }
+
+
+    /**
+     * Counts the empty squares next to a piece of the enemy.
+     *
+     * @param own pieces of the player to count for
+     * @param opp pieces of the enemy player
+     * @return potential mobility of {@code own}
+     */
+    static int potentialMobility(long own, long opp)
+    {
+        return Long.bitCount(Bitboard.neighbours(opp) & ~(own | opp));
+    }
+
+
+    /**
+     * Counts the pieces next to an empty square.
+     *
+     * @param own pieces of the player to count for
+     * @param opp pieces of the enemy player
+     * @return number of frontier pieces of {@code own}
+     */
+    static int frontier(long own, long opp)
+    {
+        return Long.bitCount(own & Bitboard.neighbours(~(own | opp)));
+    }
+
+
+    /**
+     * Counts the pieces, which can never be turned.
+     *
+     * @param own pieces of the player to count for
+     * @param opp pieces of the enemy player
+     * @return number of stable pieces of {@code own}
+     * @see Bitboard#stable(long, long)
+     */
+    static int stable(long own, long opp)
+    {
+        return Long.bitCount(Bitboard.stable(own, opp));
+    }
+
+}
@@ -5,8 +5,11 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map.Entry;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.controlsfx.control.StatusBar;
 
@@ -75,7 +78,17 @@ public class GUI extends Application
 
     static final String AUTHOR = "author";
 
-    private static final long TIMER_WAIT = 100L;
+    /**
+     * Delay in milliseconds before the A.I. starts searching, so the last move can be seen first.
+     */
+    private static final long AI_DELAY = 100L;
+
+    /**
+     * Maximum number of empty squares, at which the A.I. solves the game instead of searching, indexed by difficulty.
+     * <br>
+     * Low difficulties don't solve at all, so they don't play a perfect endgame.
+     */
+    private static final int[] ENDGAME_EMPTIES = { 0, 0, 0, 12, 15, EndgameSolver.DEFAULT_EMPTIES };
 
     private static final String PATH_ICON = "icon.png";
 
@@ -83,6 +96,8 @@ public class GUI extends Application
 
     private static final String PATH_SOUND_TAP = "res\\tap.mp3";
 
+    private static final String PATH_BOOK = "res/book.bin";
+
     /**
      * The Othello instance.
      */
@@ -138,7 +153,41 @@ public class GUI extends Application
      */
     private MenuItem redo;
     
-    private AI ai = new AI();
+    /**
+     * A.I. searching the moves, locked by each search, so its settings only change between searches.
+     */
+    private final AI ai = new AI();
+
+    /**
+     * Runs the searches of the A.I. and of the {@link #ponderer}, shared by all moves.<br>
+     * A move may wait for the ponderer, so there are two threads.
+     */
+    private ScheduledExecutorService executor = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "A.I.");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A.I. searching in the background, only used by the {@link #ponderer}.
+     */
+    private final AI ponderAi = new AI();
+
+    /**
+     * Searches the answer to the predicted reply of the human player, while the human player thinks.
+     */
+    private final Ponderer ponderer = new Ponderer(ponderAi, executor);
+
+    /**
+     * Scheduled or running move of the A.I., or {@code null} if the human player is to move.
+     */
+    private Future<?> search;
+
+    /**
+     * Number of the last scheduled move of the A.I.<br>
+     * Progress and results of older moves are dropped. Only used on the JavaFX thread.
+     */
+    private int searchNumber;
 
     ArrayList<Entry<String, Integer>> difficulties;
 
@@ -267,7 +316,8 @@ public class GUI extends Application
                 if (newToggle != null)
                 {
                     difficultyLight = (Integer)((RadioMenuItem)newToggle).getUserData();
-                    runDelayed(() -> doAiMove());
+                    cancelAiMove();
+                    scheduleAiMove();
                 }
             }
         });
@@ -303,7 +353,8 @@ public class GUI extends Application
                 {
                     // difficultyDark = (Integer)toggleDifficulty.getSelectedToggle().getUserData();
                     difficultyDark = (Integer)((RadioMenuItem)newToggle).getUserData();
-                    runDelayed(() -> doAiMove());
+                    cancelAiMove();
+                    scheduleAiMove();
                     // System.out.println("1");
                 }
 
@@ -349,6 +400,7 @@ public class GUI extends Application
             @Override
             public void handle(ActionEvent event)
             {
+                cancelAiMove();
                 if (game.undo())
                 {
                     refresh();
@@ -363,6 +415,7 @@ public class GUI extends Application
             @Override
             public void handle(ActionEvent event)
             {
+                cancelAiMove();
                 if (game.redo())
                 {
                     refresh();
@@ -383,6 +436,7 @@ public class GUI extends Application
             @Override
             public void handle(ActionEvent event)
             {
+                cancelAiMove();
                 game = new Game();
                 refresh();
             }
@@ -435,14 +489,14 @@ public class GUI extends Application
                     @Override
                     public void handle(MouseEvent event)
                     {
-                        if (game.put(xPos, yPos))
+                        if ((search == null) && game.put(xPos, yPos))
                         {
                             if (sound)
                             {
                                 new MediaPlayer(tap).play();
                             }
                             refresh();
-                            runDelayed(() -> doAiMove());
+                            scheduleAiMove();
                         }
                     }
                 });
@@ -525,54 +579,136 @@ public class GUI extends Application
     // }
     // }
 
-    private void runDelayed(Runnable runnable)
+    /**
+     * Cancels the scheduled or running move of the A.I., and the pondering.<br>
+     * Has to be called before the game is changed other than by a move.
+     */
+    private void cancelAiMove()
     {
-        new Timer().schedule(new TimerTask()
+        searchNumber++;
+        if (search != null)
         {
-            @Override
-            public void run()
-            {
-                Platform.runLater(runnable);
-            }
-        }, TIMER_WAIT);
+            search.cancel(true);
+            search = null;
+        }
+        ponderer.cancel();
+        statusBar.setProgress(0.0);
     }
 
 
-    private void doAiMove()
+    /**
+     * Schedules a move of the A.I., if it is to move.<br>
+     * The search runs on the {@link #executor}, so the window stays responsive; only its result is applied on the
+     * JavaFX thread.
+     */
+    private void scheduleAiMove()
     {
+        int number = ++searchNumber;
+        search = null;
         if (game.isGameOver())
         {
             return;
         }
-        switch (game.getCurrentPlayer())
+        int difficulty = (game.getCurrentPlayer() == Player.LIGHT) ? difficultyLight : difficultyDark;
+        if (difficulty > 0)
         {
-            case LIGHT:
-                if (difficultyLight > 0)
+            Game clone = game.clone();
+            search = executor.schedule(() -> searchAiMove(clone, difficulty, number), AI_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * Searches the move of the A.I. on the {@link #executor}, taking it from the {@link #ponderer} if it searched the
+     * position.<br>
+     * Stops, if the thread is interrupted by {@link #cancelAiMove()}.
+     *
+     * @param game copy of the game to move in
+     * @param difficulty search depth of the A.I.
+     * @param number number of the move
+     */
+    private void searchAiMove(Game game, int difficulty, int number)
+    {
+        int move = ponderer.take(game, difficulty);
+        if (Thread.currentThread().isInterrupted())
+        {
+            return;
+        }
+        if (move != Ponderer.NO_MOVE)
+        {
+            game.put(move % Game.DIM, move / Game.DIM);
+        }
+        else
+        {
+            // a cancelled search may still be unwinding, so searches wait for each other before changing settings
+            synchronized (ai)
+            {
+                ai.setListener((depth, best) -> Platform.runLater(() -> showProgress(number, depth, difficulty, best)));
+                ai.setEndgameEmpties(ENDGAME_EMPTIES[difficulty]);
+                try
                 {
-                    game = ai.move(game, difficultyLight);
-                    if (sound)
-                    {
-                        new MediaPlayer(tap).play();
-                    }
-                    refresh();
-                    runDelayed(() -> doAiMove());
+                    ai.move(game, difficulty);
                 }
-                break;
-            case DARK:
-                if (difficultyDark > 0)
+                catch (CancellationException e)
                 {
-                    game = ai.move(game, difficultyDark);
-                    if (sound)
-                    {
-                        new MediaPlayer(tap).play();
-                    }
-                    refresh();
-                    runDelayed(() -> doAiMove());
+                    return;
                 }
-                break;
-            default:
-                throw new IllegalArgumentException();
+                finally
+                {
+                    ai.setListener(null);
+                }
+            }
         }
+        Platform.runLater(() -> applyAiMove(game, difficulty, number));
+    }
+
+
+    /**
+     * Shows the progress of the move of the A.I. in the status bar.
+     *
+     * @param number number of the move
+     * @param depth completed depth
+     * @param difficulty search depth of the A.I.
+     * @param best bit index of the best move so far
+     */
+    private void showProgress(int number, int depth, int difficulty, int best)
+    {
+        if (number != searchNumber)
+        {
+            return;
+        }
+        statusBar.setText((game.getCurrentPlayer() == Player.LIGHT ? "Light" : "Dark") + " is thinking: depth " + depth
+                + ", best move " + (char)('a' + best % Game.DIM) + (best / Game.DIM + 1) + '.');
+        statusBar.setProgress((double)depth / difficulty);
+    }
+
+
+    /**
+     * Applies the move of the A.I., and schedules the next one.<br>
+     * If the human player is to move afterwards, pondering on the reply starts.
+     *
+     * @param result game after the move
+     * @param difficulty search depth of the A.I.
+     * @param number number of the move
+     */
+    private void applyAiMove(Game result, int difficulty, int number)
+    {
+        if (number != searchNumber)
+        {
+            return;
+        }
+        game = result;
+        if (sound)
+        {
+            new MediaPlayer(tap).play();
+        }
+        statusBar.setProgress(0.0);
+        refresh();
+        if (!game.isGameOver() && (((game.getCurrentPlayer() == Player.LIGHT) ? difficultyLight : difficultyDark) == 0))
+        {
+            ponderer.ponder(game, difficulty, ENDGAME_EMPTIES[difficulty]);
+        }
+        scheduleAiMove();
     }
 
 
@@ -581,6 +717,15 @@ public class GUI extends Application
     {
         initColorMaps();
         initDifficulties();
+        if (new File(PATH_BOOK).isFile())
+        {
+            OpeningBook book = OpeningBook.open(new File(PATH_BOOK).toPath());
+            ai.setBook(book);
+            ponderAi.setBook(book);
+        }
+        SearchMonitor monitor = new SearchMonitor();
+        monitor.register("GUI");
+        ai.setMonitor(monitor);
 
         VBox vBox = new VBox(initScoreBoard(), initBoard());
         statusBar = new StatusBar();
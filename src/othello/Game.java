@@ -3,7 +3,7 @@ package othello;
 
 import static othello.Player.*;
 
-import java.util.stream.IntStream;
+import java.util.Arrays;
 
 
 /**
@@ -26,30 +26,66 @@ public class Game
     public static final Player STARTPLAYER = DARK;
 
     /**
-     * The board.<br>
-     * Is always a {@link #DIM} * {@link #DIM} board, and never {@code null}.
+     * The pieces of {@link Player#DARK}.<br>
+     * Square {@code (x, y)} is stored in bit {@code y * }{@link #DIM}{@code  + x}.
      */
-    private Player[][] board;
+    private long dark;
+
+    /**
+     * The pieces of {@link Player#LIGHT}.<br>
+     * Square {@code (x, y)} is stored in bit {@code y * }{@link #DIM}{@code  + x}.
+     */
+    private long light;
 
     /**
      * Current Player.
      */
     private Player currentPlayer;
 
+    /**
+     * Zobrist hash of the pieces and the current player.<br>
+     * Updated on each move.
+     */
+    private long hash;
+
+    /**
+     * Positional score of {@link Player#DARK} minus the one of {@link Player#LIGHT}, by {@link Positional#WEIGHTS}.<br>
+     * Updated on each move.
+     */
+    private int positional;
+
     /**
      * Tells if the game is over.
      */
     private boolean gameOver;
 
     /**
-     * The previous baord configuration.
+     * Initial capacity of the move log.
      */
-    private Game previous;
+    private static final int HISTORY_CAPACITY = 16;
 
     /**
-     * The next board configuration.
+     * Squares of all logged moves, in the order they were made.<br>
+     * Allocated on the first move.
      */
-    private Game next;
+    private byte[] historyMoves;
+
+    /**
+     * Turned pieces of all logged moves, in the order they were made.<br>
+     * Allocated on the first move.
+     */
+    private long[] historyFlips;
+
+    /**
+     * Number of logged moves, including the undone ones which may be redone.
+     */
+    private int historyLength;
+
+    /**
+     * Number of moves made from the start position to the current position.<br>
+     * Always in range {@code [0,} {@link #historyLength}{@code ]}.
+     */
+    private int ply;
 
 
     /**
@@ -58,24 +94,16 @@ public class Game
     public Game()
     {
         super();
-        // board = new Player[DIM][DIM];
-        board = IntStream.range(0, DIM).mapToObj(outer -> IntStream.range(0, DIM).mapToObj(inner -> NONE).toArray(Player[]::new)).toArray(
-                                                                                                                                          Player[][]::new);
-        // for (int x = 0; x < DIM; x++)
-        // {
-        // for (int y = 0; y < DIM; y++)
-        // {
-        // board[x][y] = NONE;
-        // }
-        // }
-        board[3][3] = LIGHT;
-        board[3][4] = DARK;
-        board[4][4] = LIGHT;
-        board[4][3] = DARK;
+        dark = (1L << Bitboard.square(4, 3)) | (1L << Bitboard.square(3, 4));
+        light = (1L << Bitboard.square(3, 3)) | (1L << Bitboard.square(4, 4));
         currentPlayer = STARTPLAYER;
+        hash = Zobrist.hash(dark, light, currentPlayer);
+        positional = Positional.score(dark) - Positional.score(light);
         gameOver = false;
-        previous = null;
-        next = null;
+        historyMoves = null;
+        historyFlips = null;
+        historyLength = 0;
+        ply = 0;
     }
 
 
@@ -136,293 +164,196 @@ public class Game
         {
             throw new IllegalArgumentException("y has to be in range [0, " + (DIM - 1) + ']');
         }
-        if (!isGameOver() && (board[x][y] == NONE))
-        {
-            Game clone = clone();
-         // @formatter:off
-            if (turnFirst(x    , y - 1, Direction.N )
-              | turnFirst(x + 1, y - 1, Direction.NE)
-              | turnFirst(x + 1, y    , Direction. E)
-              | turnFirst(x + 1, y + 1, Direction.SE)
-              | turnFirst(x    , y + 1, Direction.S )
-              | turnFirst(x - 1, y + 1, Direction.SW)
-              | turnFirst(x - 1, y    , Direction. W)
-              | turnFirst(x - 1, y - 1, Direction.NW)
-               )
-         // @formatter:on
-            {
-                board[x][y] = currentPlayer;
-                nextPlayer();
-                previous = clone;
-                next = null;
-                return true;
-            }
+        long flips = getFlips(x, y);
+        if (flips != 0L)
+        {
+            int square = Bitboard.square(x, y);
+            apply(square, flips);
+            log(square, flips);
+            return true;
         }
         return false;
     }
 
 
     /**
-     * Calculates the next player.<br>
-     * Should be applied after each valid turn.
+     * Puts a piece of the current player on a square, without recording the move for {@link #undo()}.<br>
+     * If the move is not valid, nothing happens.<br>
+     * Together with {@link #unmakeMove(int, long)} this allows walking a game tree in place.
+     *
+     * @param square bit index {@code y * }{@link #DIM}{@code  + x} of the square, has to be in range {@code [0,}
+     *            {@link #DIM} {@code * } {@link #DIM} {@code - 1]}
+     * @return
+     *         <ul>
+     *         <li>mask of all turned pieces, to be passed to {@link #unmakeMove(int, long)}</li>
+     *         <li>{@code 0}, if the move was not valid</li>
+     *         </ul>
+     * @throws IllegalArgumentException if {@code square} is illegal
      */
-    private void nextPlayer()
+    public long makeMove(int square)
     {
-        if (isAnyMoveLeft(getEnemyPlayer()))
+        if ((square < 0) || (square >= DIM * DIM))
         {
-            currentPlayer = getEnemyPlayer();
+            throw new IllegalArgumentException("square has to be in range [0, " + (DIM * DIM - 1) + ']');
         }
-        else if (!isAnyMoveLeft(currentPlayer))
+        if (isGameOver() || (((dark | light) & (1L << square)) != 0L))
         {
-            gameOver = true;
+            return 0L;
         }
+        long flips = Bitboard.flips(getPieces(currentPlayer), getPieces(getEnemyPlayer()), square);
+        if (flips != 0L)
+        {
+            apply(square, flips);
+        }
+        return flips;
     }
 
 
-    private boolean turnFirst(int x, int y, Direction direction)
+    /**
+     * Takes back a move made by {@link #makeMove(int)}.<br>
+     * Restores the board, the current player and the game over state exactly as they were before the move.
+     *
+     * @param square bit index of the square passed to {@link #makeMove(int)}
+     * @param flips mask returned by {@link #makeMove(int)}, has to be other than {@code 0}
+     * @throws IllegalArgumentException if there is no piece on {@code square}
+     */
+    public void unmakeMove(int square, long flips)
     {
-        if (isDimValid(x) && isDimValid(y) && (board[x][y] == getEnemyPlayer()) && turnAll(x, y, direction))
+        long move = 1L << square;
+        Player player;
+        if ((dark & move) != 0L)
         {
-            board[x][y] = currentPlayer;
-            return true;
+            dark ^= flips | move;
+            light ^= flips;
+            player = DARK;
         }
-        return false;
+        else if ((light & move) != 0L)
+        {
+            light ^= flips | move;
+            dark ^= flips;
+            player = LIGHT;
+        }
+        else
+        {
+            throw new IllegalArgumentException("there is no piece on square " + square);
+        }
+        hash ^= Zobrist.move(player, square, flips);
+        positional -= Positional.move(player, square, flips);
+        if (currentPlayer != player)
+        {
+            hash ^= Zobrist.SIDE;
+            currentPlayer = player;
+        }
+        gameOver = false;
     }
 
 
     /**
-     * Returns wether a number is in range {@code [0,} {@link #DIM} {@code - 1]} or not.
+     * Appends a move to the move log, dropping all moves which could have been redone.
      *
-     * @param n number to be checked
-     * @return {@code true}, if n is in range {@code [0,} {@link #DIM} {@code - 1]}
+     * @param square bit index of the square
+     * @param flips mask of all turned pieces
      */
-    private boolean isDimValid(int n)
+    private void log(int square, long flips)
     {
-        return (n >= 0) && (n < DIM);
+        if (historyMoves == null)
+        {
+            historyMoves = new byte[HISTORY_CAPACITY];
+            historyFlips = new long[HISTORY_CAPACITY];
+        }
+        else if (ply == historyMoves.length)
+        {
+            historyMoves = Arrays.copyOf(historyMoves, Math.min(2 * ply, DIM * DIM));
+            historyFlips = Arrays.copyOf(historyFlips, historyMoves.length);
+        }
+        historyMoves[ply] = (byte)square;
+        historyFlips[ply] = flips;
+        ply++;
+        historyLength = ply;
     }
 
 
-    private boolean turnAll(int x, int y, Direction direction)
+    /**
+     * Puts a piece of the current player on a square, turns the pieces and calculates the next player.
+     *
+     * @param square bit index of the square
+     * @param flips mask of all pieces to turn, has to be other than {@code 0}
+     */
+    private void apply(int square, long flips)
     {
-        boolean valid = true;
-        boolean done = false;
-        int x2;
-        int y2;
-
-        switch (direction)
+        Player player = currentPlayer;
+        if (currentPlayer == DARK)
         {
-            case W:
-                x2 = x - 1;
-                while (valid && !done && x2 >= 0)
-                {
-                    if (board[x2][y] == NONE)
-                    {
-                        valid = false;
-                    }
-                    if (board[x2][y] == currentPlayer)
-                    {
-                        done = true;
-                    }
-                    x2--;
-                }
-                if (done)
-                {
-                    for (int x3 = x; x3 > x2; x3--)
-                    {
-                        board[x3][y] = currentPlayer;
-                    }
-                }
-                break;
-
-            case E:
-                x2 = x + 1;
-                while (valid && !done && x2 < DIM)
-                {
-                    if (board[x2][y] == NONE)
-                    {
-                        valid = false;
-                    }
-                    if (board[x2][y] == currentPlayer)
-                    {
-                        done = true;
-                    }
-                    x2++;
-                }
-                if (done)
-                {
-                    for (int x3 = x; x3 < x2; x3++)
-                    {
-                        board[x3][y] = currentPlayer;
-                    }
-                }
-                break;
-
-            case N:
-                y2 = y - 1;
-                while (valid && !done && y2 >= 0)
-                {
-                    if (board[x][y2] == NONE)
-                    {
-                        valid = false;
-                    }
-                    if (board[x][y2] == currentPlayer)
-                    {
-                        done = true;
-                    }
-                    y2--;
-                }
-                if (done)
-                {
-                    for (int y3 = y; y3 > y2; y3--)
-                    {
-                        board[x][y3] = currentPlayer;
-                    }
-                }
-                break;
-
-            case S:
-                y2 = y + 1;
-                while (valid && !done && y2 < DIM)
-                {
-                    if (board[x][y2] == NONE)
-                    {
-                        valid = false;
-                    }
-                    if (board[x][y2] == currentPlayer)
-                    {
-                        done = true;
-                    }
-                    y2++;
-                }
-                if (done)
-                {
-                    for (int y3 = y; y3 < y2; y3++)
-                    {
-                        board[x][y3] = currentPlayer;
-                    }
-                }
-                break;
-
-            case SE:
-                x2 = x + 1;
-                y2 = y + 1;
-                while (valid && !done && x2 < DIM && y2 < DIM)
-                {
-                    if (board[x2][y2] == NONE)
-                    {
-                        valid = false;
-                    }
-                    if (board[x2][y2] == currentPlayer)
-                    {
-                        done = true;
-                    }
-                    x2++;
-                    y2++;
-                }
-                if (done)
-                {
-                    int x3 = x;
-                    int y3 = y;
-                    while (x3 < x2)
-                    {
-                        board[x3][y3] = currentPlayer;
-                        x3++;
-                        y3++;
-                    }
-                }
-                break;
+            dark ^= flips | (1L << square);
+            light ^= flips;
+        }
+        else
+        {
+            light ^= flips | (1L << square);
+            dark ^= flips;
+        }
+        hash ^= Zobrist.move(player, square, flips);
+        positional += Positional.move(player, square, flips);
+        nextPlayer();
+        if (currentPlayer != player)
+        {
+            hash ^= Zobrist.SIDE;
+        }
+    }
 
-            case NW:
-                x2 = x - 1;
-                y2 = y - 1;
-                while (valid && !done && x2 >= 0 && y2 >= 0)
-                {
-                    if (board[x2][y2] == NONE)
-                    {
-                        valid = false;
-                    }
-                    if (board[x2][y2] == currentPlayer)
-                    {
-                        done = true;
-                    }
-                    x2--;
-                    y2--;
-                }
-                if (done)
-                {
-                    int x3 = x;
-                    int y3 = y;
-                    while (x3 > x2)
-                    {
-                        board[x3][y3] = currentPlayer;
-                        x3--;
-                        y3--;
-                    }
-                }
-                break;
 
-            case SW:
-                x2 = x - 1;
-                y2 = y + 1;
-                while (valid && !done && x2 >= 0 && y2 < DIM)
-                {
-                    if (board[x2][y2] == NONE)
-                    {
-                        valid = false;
-                    }
-                    if (board[x2][y2] == currentPlayer)
-                    {
-                        done = true;
-                    }
-                    x2--;
-                    y2++;
-                }
-                if (done)
-                {
-                    int x3 = x;
-                    int y3 = y;
-                    while (x3 > x2)
-                    {
-                        board[x3][y3] = currentPlayer;
-                        x3--;
-                        y3++;
-                    }
-                }
-                break;
+    /**
+     * Calculates the next player.<br>
+     * Should be applied after each valid turn.
+     */
+    private void nextPlayer()
+    {
+        if (isAnyMoveLeft(getEnemyPlayer()))
+        {
+            currentPlayer = getEnemyPlayer();
+        }
+        else if (!isAnyMoveLeft(currentPlayer))
+        {
+            gameOver = true;
+        }
+    }
 
-            case NE:
-                x2 = x + 1;
-                y2 = y - 1;
-                while (valid && !done && x2 < DIM && y2 >= 0)
-                {
-                    if (board[x2][y2] == NONE)
-                    {
-                        valid = false;
-                    }
-                    if (board[x2][y2] == currentPlayer)
-                    {
-                        done = true;
-                    }
-                    x2++;
-                    y2--;
-                }
-                if (done)
-                {
-                    int x3 = x;
-                    int y3 = y;
-                    while (x3 < x2)
-                    {
-                        board[x3][y3] = currentPlayer;
-                        x3++;
-                        y3--;
-                    }
-                }
-                break;
 
+    /**
+     * Returns the pieces of a player.
+     *
+     * @param player player
+     * @return
+     *         <ul>
+     *         <li>mask of all pieces of the player</li>
+     *         <li>mask of all empty squares, if {@code player} is {@link Player#NONE}</li>
+     *         </ul>
+     */
+    long getPieces(Player player)
+    {
+        switch (player)
+        {
+            case DARK:
+                return dark;
+            case LIGHT:
+                return light;
+            case NONE:
+                return ~(dark | light);
             default:
                 throw new IllegalArgumentException();
         }
-        return done;
+    }
+
+
+    /**
+     * Returns wether a number is in range {@code [0,} {@link #DIM} {@code - 1]} or not.
+     *
+     * @param n number to be checked
+     * @return {@code true}, if n is in range {@code [0,} {@link #DIM} {@code - 1]}
+     */
+    private boolean isDimValid(int n)
+    {
+        return (n >= 0) && (n < DIM);
     }
 
 
@@ -437,7 +368,7 @@ public class Game
             for (int x = 0; x < DIM; x++)
             {
                 sb.append("| ");
-                sb.append(board[x][y]);
+                sb.append(getTile(x, y));
                 sb.append(' ');
             }
             sb.append("| ");
@@ -464,53 +395,6 @@ public class Game
         return sb.toString();
     }
 
-    /**
-     * Represents all possible directions.
-     */
-    private enum Direction
-    {
-        /**
-         * North.
-         */
-        N,
-
-        /**
-         * North-East.
-         */
-        NE,
-
-        /**
-         * East.
-         */
-        E,
-
-        /**
-         * South-East.
-         */
-        SE,
-
-        /**
-         * South.
-         */
-        S,
-
-        /**
-         * South-West.
-         */
-        SW,
-
-        /**
-         * West.
-         */
-        W,
-
-        /**
-         * North-West.
-         */
-        NW;
-    }
-
-
     /**
      * Returns the owner of a specific tile.
      *
@@ -529,209 +413,169 @@ public class Game
         {
             throw new IndexOutOfBoundsException("y has to be in range [0, " + (DIM - 1) + ']');
         }
-        return board[x][y];
+        long mask = 1L << Bitboard.square(x, y);
+        if ((dark & mask) != 0L)
+        {
+            return DARK;
+        }
+        if ((light & mask) != 0L)
+        {
+            return LIGHT;
+        }
+        return NONE;
     }
 
 
     /**
-     * Returns if there is at least one possible move left for a player.
+     * Returns the Zobrist hash of the position.<br>
+     * Positions with the same pieces and the same current player have the same hash, regardless of the moves which
+     * led to them.
      *
-     * @param player player
-     * @return {@code true}, if there is at least one possible move left
+     * @return hash of the position
      */
-    private boolean isAnyMoveLeft(Player player)
+    public long getHash()
     {
-        for (int x = 0; x < DIM; x++)
+        return hash;
+    }
+
+
+    /**
+     * Returns the symmetry, which takes the position to its canonical form.<br>
+     * The canonical form is the minimum of all {@link Bitboard#SYMMETRIES} transforms, comparing the pieces of
+     * {@link Player#DARK} first and the ones of {@link Player#LIGHT} second, both unsigned. If several symmetries give
+     * the minimum, the first of them is returned.
+     *
+     * @return symmetry, in range {@code [0, 8)}
+     */
+    public int getSymmetry()
+    {
+        int symmetry = 0;
+        long minDark = dark;
+        long minLight = light;
+        for (int s = 1; s < Bitboard.SYMMETRIES; s++)
         {
-            for (int y = 0; y < DIM; y++)
+            long d = Bitboard.transform(dark, s);
+            int compare = Long.compareUnsigned(d, minDark);
+            if (compare < 0)
             {
-                if (checkPut(x, y, player))
+                symmetry = s;
+                minDark = d;
+                minLight = Bitboard.transform(light, s);
+            }
+            else if (compare == 0)
+            {
+                long l = Bitboard.transform(light, s);
+                if (Long.compareUnsigned(l, minLight) < 0)
                 {
-                    return true;
+                    symmetry = s;
+                    minLight = l;
                 }
             }
         }
-        return false;
+        return symmetry;
     }
 
 
     /**
-     * Returns wether it's <b>possible</b> to put a piece on the desired location.
+     * Returns the Zobrist hash of the canonical form of the position, see {@link #getSymmetry()}.<br>
+     * Positions, which are symmetric to each other, have the same canonical hash. Unlike {@link #getHash()}, this is
+     * calculated on each call.
      *
-     * @param x x-coordinate
-     * @param y y-coordinate
-     * @param player player
-     * @return {@code true}, if it's possible to put a piece
+     * @return canonical hash of the position
      */
-    private boolean checkPut(int x, int y, Player player)
+    public long getCanonicalHash()
     {
-        // @formatter:off
-        return board[x][y] == NONE
-            && (checkTurnFirst(x    , y - 1, Direction.N , player)
-             || checkTurnFirst(x + 1, y - 1, Direction.NE, player)
-             || checkTurnFirst(x + 1, y    , Direction. E, player)
-             || checkTurnFirst(x + 1, y + 1, Direction.SE, player)
-             || checkTurnFirst(x    , y + 1, Direction.S , player)
-             || checkTurnFirst(x - 1, y + 1, Direction.SW, player)
-             || checkTurnFirst(x - 1, y    , Direction. W, player)
-             || checkTurnFirst(x - 1, y - 1, Direction.NW, player)
-               );
-         // @formatter:on
+        return getHash(getSymmetry());
     }
 
 
-    private boolean checkTurnFirst(int x, int y, Direction direction, Player player)
+    /**
+     * Calculates the Zobrist hash of the position transformed by a symmetry.
+     *
+     * @param symmetry symmetry, in range {@code [0, }{@link Bitboard#SYMMETRIES}{@code )}
+     * @return hash of the transformed position
+     */
+    long getHash(int symmetry)
     {
-        return (isDimValid(x) && isDimValid(y) && (board[x][y] == player.getEnemy()) && checkTurnAll(x, y, direction, player));
+        return Zobrist.hash(Bitboard.transform(dark, symmetry), Bitboard.transform(light, symmetry), currentPlayer);
     }
 
 
-    private boolean checkTurnAll(int x, int y, Direction direction, Player player)
+    /**
+     * Returns the positional score of a player, which is the sum of the weights of its pieces by {@link AI#MATRIX}
+     * minus the one of the enemy's pieces.<br>
+     * Kept up to date on each move, so this takes constant time.
+     *
+     * @param player player
+     * @return positional score of {@code player}, or {@code 0} if {@code player} is {@link Player#NONE}
+     */
+    public int getPositionalScore(Player player)
     {
-        int x2;
-        int y2;
-        switch (direction)
-        {
-            case W:
-                x2 = x - 1;
-                while (x2 >= 0)
-                {
-                    if (board[x2][y] == NONE)
-                    {
-                        return false;
-                    }
-                    if (board[x2][y] == player)
-                    {
-                        return true;
-                    }
-                    x2--;
-                }
-                break;
-
-            case E:
-                x2 = x + 1;
-                while (x2 < DIM)
-                {
-                    if (board[x2][y] == NONE)
-                    {
-                        return false;
-                    }
-                    if (board[x2][y] == player)
-                    {
-                        return true;
-                    }
-                    x2++;
-                }
-                break;
-
-            case N:
-                y2 = y - 1;
-                while (y2 >= 0)
-                {
-                    if (board[x][y2] == NONE)
-                    {
-                        return false;
-                    }
-                    if (board[x][y2] == player)
-                    {
-                        return true;
-                    }
-                    y2--;
-                }
-                break;
+        return (player == DARK) ? positional : (player == LIGHT) ? -positional : 0;
+    }
 
-            case S:
-                y2 = y + 1;
-                while (y2 < DIM)
-                {
-                    if (board[x][y2] == NONE)
-                    {
-                        return false;
-                    }
-                    if (board[x][y2] == player)
-                    {
-                        return true;
-                    }
-                    y2++;
-                }
-                break;
 
-            case SE:
-                x2 = x + 1;
-                y2 = y + 1;
-                while (x2 < DIM && y2 < DIM)
-                {
-                    if (board[x2][y2] == NONE)
-                    {
-                        return false;
-                    }
-                    if (board[x2][y2] == player)
-                    {
-                        return true;
-                    }
-                    x2++;
-                    y2++;
-                }
-                break;
+    /**
+     * Returns all valid moves of the current player.<br>
+     * Square {@code (x, y)} is stored in bit {@code y * }{@link #DIM}{@code  + x}.
+     *
+     * @return
+     *         <ul>
+     *         <li>mask of all squares, on which {@link #put(int, int)} would succeed</li>
+     *         <li>{@code 0}, if the game is over</li>
+     *         </ul>
+     */
+    public long getMoves()
+    {
+        if (isGameOver())
+        {
+            return 0L;
+        }
+        return Bitboard.moves(getPieces(currentPlayer), getPieces(getEnemyPlayer()));
+    }
 
-            case NW:
-                x2 = x - 1;
-                y2 = y - 1;
-                while (x2 >= 0 && y2 >= 0)
-                {
-                    if (board[x2][y2] == NONE)
-                    {
-                        return false;
-                    }
-                    if (board[x2][y2] == player)
-                    {
-                        return true;
-                    }
-                    x2--;
-                    y2--;
-                }
-                break;
 
-            case SW:
-                x2 = x - 1;
-                y2 = y + 1;
-                while (x2 >= 0 && y2 < DIM)
-                {
-                    if (board[x2][y2] == NONE)
-                    {
-                        return false;
-                    }
-                    if (board[x2][y2] == player)
-                    {
-                        return true;
-                    }
-                    x2--;
-                    y2++;
-                }
-                break;
+    /**
+     * Returns the pieces, which would be turned by the current player putting a piece on the desired location.<br>
+     * Square {@code (x, y)} is stored in bit {@code y * }{@link #DIM}{@code  + x}.
+     *
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @return
+     *         <ul>
+     *         <li>mask of all turned pieces</li>
+     *         <li>{@code 0}, if the move is not valid</li>
+     *         </ul>
+     * @throws IndexOutOfBoundsException if any argument is illegal
+     */
+    public long getFlips(int x, int y)
+    {
+        if (!isDimValid(x))
+        {
+            throw new IndexOutOfBoundsException("x has to be in range [0, " + (DIM - 1) + ']');
+        }
+        if (!isDimValid(y))
+        {
+            throw new IndexOutOfBoundsException("y has to be in range [0, " + (DIM - 1) + ']');
+        }
+        int square = Bitboard.square(x, y);
+        if (isGameOver() || (((dark | light) & (1L << square)) != 0L))
+        {
+            return 0L;
+        }
+        return Bitboard.flips(getPieces(currentPlayer), getPieces(getEnemyPlayer()), square);
+    }
 
-            case NE:
-                x2 = x + 1;
-                y2 = y - 1;
-                while (x2 < DIM && y2 >= 0)
-                {
-                    if (board[x2][y2] == NONE)
-                    {
-                        return false;
-                    }
-                    if (board[x2][y2] == player)
-                    {
-                        return true;
-                    }
-                    x2++;
-                    y2--;
-                }
-                break;
 
-            default:
-                throw new IllegalArgumentException();
-        }
-        return false;
+    /**
+     * Returns if there is at least one possible move left for a player.
+     *
+     * @param player player
+     * @return {@code true}, if there is at least one possible move left
+     */
+    private boolean isAnyMoveLeft(Player player)
+    {
+        return Bitboard.moves(getPieces(player), getPieces(player.getEnemy())) != 0L;
     }
 
 
@@ -748,18 +592,11 @@ public class Game
      */
     public int getScore(Player player)
     {
-        int score = 0;
-        for (int x = 0; x < DIM; x++)
+        if (player == null)
         {
-            for (int y = 0; y < DIM; y++)
-            {
-                if (board[x][y] == player)
-                {
-                    score++;
-                }
-            }
+            return 0;
         }
-        return score;
+        return Long.bitCount(getPieces(player));
     }
 
 
@@ -767,15 +604,19 @@ public class Game
     public Game clone()
     {
         Game clone = new Game();
-        clone.board = new Player[DIM][DIM];
-        for (int x = 0; x < DIM; x++)
-        {
-            clone.board[x] = board[x].clone();
-        }
+        clone.dark = dark;
+        clone.light = light;
         clone.currentPlayer = currentPlayer;
+        clone.hash = hash;
+        clone.positional = positional;
         clone.gameOver = gameOver;
-        clone.previous = previous;
-        clone.next = next;
+        if (historyMoves != null)
+        {
+            clone.historyMoves = Arrays.copyOf(historyMoves, Math.max(historyLength, 1));
+            clone.historyFlips = Arrays.copyOf(historyFlips, clone.historyMoves.length);
+        }
+        clone.historyLength = historyLength;
+        clone.ply = ply;
         return clone;
     }
 
@@ -788,13 +629,10 @@ public class Game
      */
     public boolean undo()
     {
-        if (previous != null)
+        if (ply > 0)
         {
-            next = clone();
-            board = previous.board;
-            currentPlayer = previous.currentPlayer;
-            gameOver = previous.gameOver;
-            previous = previous.previous;
+            ply--;
+            unmakeMove(historyMoves[ply], historyFlips[ply]);
             return true;
         }
         return false;
@@ -803,19 +641,16 @@ public class Game
 
     public boolean isAnyUndoLeft()
     {
-        return (previous != null);
+        return (ply > 0);
     }
 
 
     public boolean redo()
     {
-        if (next != null)
+        if (ply < historyLength)
         {
-            previous = clone();
-            board = next.board;
-            currentPlayer = next.currentPlayer;
-            gameOver = next.gameOver;
-            next = next.next;
+            apply(historyMoves[ply], historyFlips[ply]);
+            ply++;
             return true;
         }
         return false;
@@ -824,7 +659,53 @@ public class Game
 
     public boolean isAnyRedoLeft()
     {
-        return (next != null);
+        return (ply < historyLength);
+    }
+
+
+    /**
+     * Returns the number of moves made from the start position to the current position.
+     *
+     * @return number of moves, which may be undone
+     */
+    public int getPly()
+    {
+        return ply;
+    }
+
+
+    /**
+     * Returns the number of logged moves, including the undone ones which may be redone.
+     *
+     * @return number of logged moves
+     */
+    public int getHistoryLength()
+    {
+        return historyLength;
+    }
+
+
+    /**
+     * Undos or redos moves until the desired number of moves is reached.
+     *
+     * @param ply number of moves from the start position, has to be in range {@code [0,}
+     *            {@link #getHistoryLength()}{@code ]}
+     * @throws IllegalArgumentException if {@code ply} is illegal
+     */
+    public void jump(int ply)
+    {
+        if ((ply < 0) || (ply > historyLength))
+        {
+            throw new IllegalArgumentException("ply has to be in range [0, " + historyLength + ']');
+        }
+        while (this.ply > ply)
+        {
+            undo();
+        }
+        while (this.ply < ply)
+        {
+            redo();
+        }
     }
 
 
@@ -839,15 +720,9 @@ public class Game
         {
             return false;
         }
-        for (int x = 0; x < DIM; x++)
+        if ((((Game)obj).dark != dark) || (((Game)obj).light != light))
         {
-            for (int y = 0; y < DIM; y++)
-            {
-                if (((Game)obj).board[x][y] != board[x][y])
-                {
-                    return false;
-                }
-            }
+            return false;
         }
         if (((Game)obj).currentPlayer != currentPlayer)
         {
@@ -857,13 +732,16 @@ public class Game
         {
             return false;
         }
-        if (((Game)obj).previous != previous)
+        if ((((Game)obj).ply != ply) || (((Game)obj).historyLength != historyLength))
         {
             return false;
         }
-        if (((Game)obj).next != next)
+        for (int i = 0; i < historyLength; i++)
         {
-            return false;
+            if ((((Game)obj).historyMoves[i] != historyMoves[i]) || (((Game)obj).historyFlips[i] != historyFlips[i]))
+            {
+                return false;
+            }
         }
         return true;
     }
@@ -871,18 +749,7 @@ public class Game
 
     public int getNumberOfFreeTiles()
     {
-        int numberOfFreeTiles = 0;
-        for (int x = 0; x < DIM; x++)
-        {
-            for (int y = 0; y < DIM; y++)
-            {
-                if ((board[x][y] != LIGHT) && (board[x][y] != DARK))
-                {
-                    numberOfFreeTiles++;
-                }
-            }
-        }
-        return numberOfFreeTiles;
+        return Long.bitCount(~(dark | light));
     }
 
 }
@@ -0,0 +1,214 @@
+package othello;
+
+
+import java.util.Arrays;
+
+
+/**
+ * Orders the moves of a search, so that alpha-beta pruning cuts off as early as possible.<br>
+ * Moves are tried in this order:
+ * <ol>
+ * <li>the best move stored in the transposition table</li>
+ * <li>the killer moves, which caused a cutoff at the same height before</li>
+ * <li>all other moves, ranked by the history table and by the mobility of the enemy after the move</li>
+ * </ol>
+ * Holds state of a single search, so every searching thread needs its own instance.
+ *
+ * @author yolo
+ */
+final class MoveOrdering
+{
+
+    /**
+     * Maximum height of a search, as every move fills one square.
+     */
+    private static final int MAX_HEIGHT = Game.DIM * Game.DIM;
+
+    /**
+     * Maximum number of moves of a position, one per square, as reachable positions can have more than 32 moves.
+     */
+    private static final int MAX_MOVES = Game.DIM * Game.DIM;
+
+    /**
+     * Number of killer moves per height.
+     */
+    private static final int KILLERS = 2;
+
+    /**
+     * Minimum remaining depth to rank moves by the mobility of the enemy.<br>
+     * Below that, calculating the mobility costs more than it saves.
+     */
+    private static final int MOBILITY_DEPTH = 4;
+
+    /**
+     * Rank of the hash move.
+     */
+    private static final int RANK_HASH = Integer.MAX_VALUE;
+
+    /**
+     * Rank of the first killer move, the second one is ranked one lower.
+     */
+    private static final int RANK_KILLER = Integer.MAX_VALUE - 2;
+
+    /**
+     * Rank subtracted per move of the enemy.
+     */
+    private static final int RANK_MOBILITY = 1 << 10;
+
+    /**
+     * Killer moves, indexed by height.
+     */
+    private final int[][] killers = new int[MAX_HEIGHT][KILLERS];
+
+    /**
+     * History table, indexed by {@link Player#ordinal()} and bit index.
+     */
+    private final int[][] history = new int[2][Game.DIM * Game.DIM];
+
+    /**
+     * Moves to order, indexed by height.
+     */
+    private final int[][] moves = new int[MAX_HEIGHT][MAX_MOVES];
+
+    /**
+     * Ranks of {@link #moves}, indexed by height.
+     */
+    private final int[][] ranks = new int[MAX_HEIGHT][MAX_MOVES];
+
+
+    MoveOrdering()
+    {
+        super();
+        clear();
+    }
+
+
+    /**
+     * Forgets all killer moves and the history.
+     */
+    void clear()
+    {
+        for (int height = 0; height < MAX_HEIGHT; height++)
+        {
+            for (int i = 0; i < KILLERS; i++)
+            {
+                killers[height][i] = TranspositionTable.NO_MOVE;
+            }
+        }
+        for (int[] squares : history)
+        {
+            Arrays.fill(squares, 0);
+        }
+    }
+
+
+    /**
+     * Ranks all moves of a position.<br>
+     * The moves have to be fetched with {@link #next(int, int, int)} afterwards.
+     *
+     * @param game position
+     * @param moves mask of all valid moves
+     * @param hashMove best move stored in the transposition table, or {@link TranspositionTable#NO_MOVE}
+     * @param height number of moves made since the root
+     * @param depth remaining depth
+     * @return number of moves
+     */
+    int rank(Game game, long moves, int hashMove, int height, int depth)
+    {
+        Player player = game.getCurrentPlayer();
+        long own = game.getPieces(player);
+        long opp = game.getPieces(player.getEnemy());
+        int[] history = this.history[player.ordinal()];
+        int[] killers = this.killers[height];
+        int[] list = this.moves[height];
+        int[] ranks = this.ranks[height];
+        int count = 0;
+        for (; moves != 0L; moves &= moves - 1L)
+        {
+            int square = Long.numberOfTrailingZeros(moves);
+            int rank;
+            if (square == hashMove)
+            {
+                rank = RANK_HASH;
+            }
+            else if (square == killers[0])
+            {
+                rank = RANK_KILLER;
+            }
+            else if (square == killers[1])
+            {
+                rank = RANK_KILLER - 1;
+            }
+            else
+            {
+                rank = history[square];
+                if (depth >= MOBILITY_DEPTH)
+                {
+                    long flips = Bitboard.flips(own, opp, square);
+                    rank -= RANK_MOBILITY * Long.bitCount(Bitboard.moves(opp & ~flips, own | flips | (1L << square)));
+                }
+            }
+            list[count] = square;
+            ranks[count] = rank;
+            count++;
+        }
+        return count;
+    }
+
+
+    /**
+     * Returns the best ranked move, which was not returned yet.
+     *
+     * @param height number of moves made since the root
+     * @param index number of moves already returned
+     * @param count number of moves returned by {@link #rank(Game, long, int, int, int)}
+     * @return bit index of the move
+     */
+    int next(int height, int index, int count)
+    {
+        int[] list = moves[height];
+        int[] ranks = this.ranks[height];
+        int best = index;
+        for (int i = index + 1; i < count; i++)
+        {
+            if (ranks[i] > ranks[best])
+            {
+                best = i;
+            }
+        }
+        int square = list[best];
+        list[best] = list[index];
+        ranks[best] = ranks[index];
+        list[index] = square;
+        return square;
+    }
+
+
+    /**
+     * Remembers a move, which caused a cutoff.
+     *
+     * @param player player who made the move
+     * @param square bit index of the move
+     * @param height number of moves made since the root
+     * @param depth remaining depth
+     */
+    void cutoff(Player player, int square, int height, int depth)
+    {
+        int[] killers = this.killers[height];
+        if (killers[0] != square)
+        {
+            killers[1] = killers[0];
+            killers[0] = square;
+        }
+        int[] history = this.history[player.ordinal()];
+        history[square] += depth * depth;
+        if (history[square] >= RANK_KILLER / 2)
+        {
+            for (int i = 0; i < history.length; i++)
+            {
+                history[i] /= 2;
+            }
+        }
+    }
+
+}
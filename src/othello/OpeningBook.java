@@ -0,0 +1,341 @@
+package othello;
+
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Opening book, which is a binary file of positions with their best moves.<br>
+ * The file is a header of three {@code int}s (a magic number, the version and the number of entries), followed by the
+ * entries sorted by key. Each entry takes {@value #ENTRY_SIZE} bytes: the {@link Game#getCanonicalHash()} of the
+ * position as {@code long}, the score of the best move as {@code short}, the bit index of the best move and the search
+ * depth as {@code byte}s. All values are big-endian.<br>
+ * Positions are stored in their canonical form, so symmetric positions share one entry; the move is transformed like
+ * the position.<br>
+ * The file is mapped into memory, so it takes no heap, and a lookup is a binary search on the mapped file. Books are
+ * written by a {@link Builder}, or generated by {@link #main(String[])}.
+ *
+ * @author yolo
+ */
+public final class OpeningBook
+{
+
+    /**
+     * Value of {@link #getMove(Game)}, if the position is not in the book.
+     */
+    public static final int NO_MOVE = TranspositionTable.NO_MOVE;
+
+    /**
+     * Value of {@link #getScore(Game)}, if the position is not in the book.
+     */
+    public static final int NO_SCORE = Integer.MIN_VALUE;
+
+    /**
+     * Magic number at the beginning of a book file.
+     */
+    private static final int MAGIC = 0x4F54424B;
+
+    /**
+     * Version of the book file format.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Bytes of the header.
+     */
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    /**
+     * Bytes of one entry.
+     */
+    static final int ENTRY_SIZE = 12;
+
+    /**
+     * The mapped file.
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Number of entries.
+     */
+    private final int size;
+
+
+    private OpeningBook(MappedByteBuffer buffer, int size)
+    {
+        super();
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+
+    /**
+     * Maps a book file into memory.
+     *
+     * @param file book file
+     * @return opening book
+     * @throws IOException if the file can't be read, or is no book file
+     */
+    public static OpeningBook open(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (channel.size() < HEADER_SIZE)
+            {
+                throw new IOException("no book file: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if ((buffer.getInt(0) != MAGIC) || (buffer.getInt(Integer.BYTES) != VERSION))
+            {
+                throw new IOException("no book file of version " + VERSION + ": " + file);
+            }
+            int size = buffer.getInt(2 * Integer.BYTES);
+            if ((size < 0) || (channel.size() != HEADER_SIZE + (long)size * ENTRY_SIZE))
+            {
+                throw new IOException("book file is truncated: " + file);
+            }
+            return new OpeningBook(buffer, size);
+        }
+    }
+
+
+    /**
+     * Looks up the best move of a position.
+     *
+     * @param game position
+     * @return bit index {@code y * }{@link Game#DIM}{@code  + x} of the best move, or {@link #NO_MOVE}, if the
+     *         position is not in the book, or if the stored move is not valid, which guards against colliding keys
+     */
+    public int getMove(Game game)
+    {
+        if (game.isGameOver())
+        {
+            return NO_MOVE;
+        }
+        int symmetry = game.getSymmetry();
+        int entry = find(game.getHash(symmetry));
+        if (entry < 0)
+        {
+            return NO_MOVE;
+        }
+        int canonical = buffer.get(offset(entry) + Long.BYTES + Short.BYTES);
+        int move = Bitboard.transform(canonical, Bitboard.inverse(symmetry));
+        return ((game.getMoves() & (1L << move)) != 0L) ? move : NO_MOVE;
+    }
+
+
+    /**
+     * Looks up the score of the best move of a position.
+     *
+     * @param game position
+     * @return score from the view of the current player, or {@link #NO_SCORE}, if the position is not in the book
+     */
+    public int getScore(Game game)
+    {
+        if (game.isGameOver())
+        {
+            return NO_SCORE;
+        }
+        int entry = find(game.getHash(game.getSymmetry()));
+        return (entry < 0) ? NO_SCORE : buffer.getShort(offset(entry) + Long.BYTES);
+    }
+
+
+    /**
+     * Returns the number of positions in the book.
+     *
+     * @return number of positions
+     */
+    public int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * Finds the entry of a position.
+     *
+     * @param key canonical hash of the position
+     * @return number of the entry, or {@code -1}, if the position is not in the book
+     */
+    private int find(long key)
+    {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            long current = buffer.getLong(offset(middle));
+            if (current < key)
+            {
+                low = middle + 1;
+            }
+            else if (current > key)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+
+    private static int offset(int entry)
+    {
+        return HEADER_SIZE + entry * ENTRY_SIZE;
+    }
+
+
+    /**
+     * Generates a book of all positions up to a number of moves from the start, each searched by an
+     * {@link AlphaBetaAI}.
+     *
+     * @param args book file, number of moves and search depth
+     * @throws IOException if the book can't be written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 3)
+        {
+            System.err.println("usage: OpeningBook <file> <moves> <depth>");
+            return;
+        }
+        int moves = Integer.parseInt(args[1]);
+        int depth = Integer.parseInt(args[2]);
+        try (AlphaBetaAI ai = new AlphaBetaAI())
+        {
+            Builder builder = new Builder();
+            Set<Long> seen = new HashSet<>();
+            Deque<Game> queue = new ArrayDeque<>();
+            queue.add(new Game());
+            seen.add(new Game().getCanonicalHash());
+            while (!queue.isEmpty())
+            {
+                Game game = queue.poll();
+                Game searched = game.clone();
+                ai.move(searched, depth);
+                builder.add(game, ai.getPrincipalVariation()[0], ai.getScore(), depth);
+                if (game.getPly() < moves)
+                {
+                    for (long next = game.getMoves(); next != 0L; next &= next - 1L)
+                    {
+                        int square = Long.numberOfTrailingZeros(next);
+                        Game child = game.clone();
+                        child.put(square % Game.DIM, square / Game.DIM);
+                        if (!child.isGameOver() && seen.add(child.getCanonicalHash()))
+                        {
+                            queue.add(child);
+                        }
+                    }
+                }
+            }
+            builder.write(Paths.get(args[0]));
+            System.out.println(builder.size() + " positions written to " + args[0]);
+        }
+    }
+
+    /**
+     * Collects the entries of a new book.
+     */
+    public static final class Builder
+    {
+
+        /**
+         * Entries by key, packed like in the file: score in bits 0 to 15, move in bits 16 to 23, depth in bits 24 to
+         * 31.
+         */
+        private final Map<Long, Integer> entries = new HashMap<>();
+
+
+        /**
+         * Adds a position.<br>
+         * If the position or a symmetric one was added before, the entry of the deeper search is kept.
+         *
+         * @param game position, must not be over
+         * @param move bit index of the best move
+         * @param score score of the best move from the view of the current player, is clamped to the range of
+         *            {@code short}
+         * @param depth search depth, in range {@code [0, 255]}
+         * @throws IllegalArgumentException if the move is not valid
+         */
+        public void add(Game game, int move, int score, int depth)
+        {
+            if ((move < 0) || (move >= Game.DIM * Game.DIM) || ((game.getMoves() & (1L << move)) == 0L))
+            {
+                throw new IllegalArgumentException("move " + move + " is not valid");
+            }
+            int clamped = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score));
+            int canonical = Bitboard.transform(move, game.getSymmetry());
+            int entry = (clamped & 0xFFFF) | (canonical << 16) | ((depth & 0xFF) << 24);
+            entries.merge(game.getCanonicalHash(), entry,
+                    (old, current) -> ((old >>> 24) > (current >>> 24)) ? old : current);
+        }
+
+
+        /**
+         * Returns the number of positions added.
+         *
+         * @return number of positions
+         */
+        public int size()
+        {
+            return entries.size();
+        }
+
+
+        /**
+         * Writes the book file.
+         *
+         * @param file book file, is replaced if it exists
+         * @throws IOException if the file can't be written
+         */
+        public void write(Path file) throws IOException
+        {
+            long[] keys = new long[entries.size()];
+            int i = 0;
+            for (long key : entries.keySet())
+            {
+                keys[i++] = key;
+            }
+            Arrays.sort(keys);
+            try (OutputStream out = Files.newOutputStream(file))
+            {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+                data.writeInt(keys.length);
+                for (long key : keys)
+                {
+                    int entry = entries.get(key);
+                    data.writeLong(key);
+                    data.writeShort(entry);
+                    data.writeByte(entry >>> 16);
+                    data.writeByte(entry >>> 24);
+                }
+                data.flush();
+            }
+        }
+    }
+
+}
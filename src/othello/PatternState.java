@@ -0,0 +1,131 @@
+package othello;
+
+
+/**
+ * Indices of all pattern instances of a position, which are updated on each move.<br>
+ * Holds state of a single search, so every searching thread needs its own instance.
+ *
+ * @author yolo
+ * @see Patterns
+ */
+final class PatternState
+{
+
+    /**
+     * Index of each instance.
+     */
+    private final int[] indices = new int[Patterns.getInstances()];
+
+
+    /**
+     * Calculates the indices of a position from scratch.
+     *
+     * @param game position
+     */
+    void set(Game game)
+    {
+        set(game.getPieces(Player.DARK), game.getPieces(Player.LIGHT));
+    }
+
+
+    /**
+     * Calculates the indices of a position from scratch.
+     *
+     * @param dark pieces of {@link Player#DARK}
+     * @param light pieces of {@link Player#LIGHT}
+     */
+    void set(long dark, long light)
+    {
+        for (int instance = 0; instance < indices.length; instance++)
+        {
+            indices[instance] = 0;
+        }
+        add(dark, 1);
+        add(light, 2);
+    }
+
+
+    /**
+     * Updates the indices after a move.
+     *
+     * @param player player who made the move
+     * @param square bit index of the put piece
+     * @param flips mask of all turned pieces
+     */
+    void move(Player player, int square, long flips)
+    {
+        boolean dark = player == Player.DARK;
+        add(1L << square, dark ? 1 : 2);
+        add(flips, dark ? -1 : 1);
+    }
+
+
+    /**
+     * Updates the indices after a move was taken back.
+     *
+     * @param player player who made the move
+     * @param square bit index of the put piece
+     * @param flips mask of all turned pieces
+     */
+    void unmove(Player player, int square, long flips)
+    {
+        boolean dark = player == Player.DARK;
+        add(1L << square, dark ? -1 : -2);
+        add(flips, dark ? 1 : -1);
+    }
+
+
+    /**
+     * Evaluates the position.
+     *
+     * @param patterns weights
+     * @param player player to evaluate for
+     * @param empties number of empty squares
+     * @return sum of the weights of all instances, from the view of {@code player}
+     */
+    int evaluate(Patterns patterns, Player player, int empties)
+    {
+        short[] weights = patterns.weights[Patterns.phase(empties)];
+        int[] offsets = Patterns.INSTANCE_OFFSETS;
+        int score = 0;
+        for (int instance = 0; instance < indices.length; instance++)
+        {
+            score += weights[offsets[instance] + indices[instance]];
+        }
+        return (player == Player.DARK) ? score : -score;
+    }
+
+
+    /**
+     * Returns the index of an instance.
+     *
+     * @param instance number of the instance
+     * @return index in base 3
+     */
+    int getIndex(int instance)
+    {
+        return indices[instance];
+    }
+
+
+    /**
+     * Adds a value to the digits of squares in all instances.
+     *
+     * @param squares mask of the squares
+     * @param digit value to add to each digit
+     */
+    private void add(long squares, int digit)
+    {
+        for (; squares != 0L; squares &= squares - 1L)
+        {
+            int square = Long.numberOfTrailingZeros(squares);
+            int[] instances = Patterns.SQUARE_INSTANCES[square];
+            int[] powers = Patterns.SQUARE_POWERS[square];
+            for (int i = 0; i < instances.length; i++)
+            {
+                indices[instances[i]] += digit * powers[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,478 @@
+package othello;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Weights of a pattern based evaluation.<br>
+ * The board is covered by pattern instances: the edges, the 3x3 and 2x5 corner regions, and the diagonals of length 4
+ * to 8, each in all its rotations and reflections. Every instance reads the squares of its pattern as a number in base
+ * 3, with a digit of {@code 0} for empty, {@code 1} for {@link Player#DARK} and {@code 2} for {@link Player#LIGHT}. All
+ * instances of a pattern share one weight table, and there is one set of tables per game phase.<br>
+ * The weights are stored in a compact binary file, see {@link #write(OutputStream)}. {@link AlphaBetaAI}s evaluate
+ * with the {@link #getDefault() default weights} from the class path, or with {@link AI#MATRIX}, if there are none.
+ *
+ * @author yolo
+ */
+public final class Patterns
+{
+
+    /**
+     * Name of the weight file, which is looked up on the class path.
+     */
+    public static final String RESOURCE = "patterns.bin";
+
+    /**
+     * Engine option to evaluate with {@link AI#MATRIX} instead of pattern weights, see {@link #parse(String)}.
+     */
+    public static final String MATRIX_OPTION = "matrix";
+
+    /**
+     * Number of game phases, each with its own weights.
+     */
+    public static final int PHASES = 6;
+
+    /**
+     * Number of moves per game phase.
+     */
+    private static final int PHASE_LENGTH = 10;
+
+    /**
+     * Magic number at the beginning of a weight file.
+     */
+    private static final int MAGIC = 0x4F544850;
+
+    /**
+     * Version of the weight file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Weights of the {@link #RESOURCE}, once {@link #defaultLoaded}.
+     */
+    private static Patterns defaultPatterns;
+
+    /**
+     * Tells if the {@link #RESOURCE} has been looked up.
+     */
+    private static boolean defaultLoaded;
+
+    // @formatter:off
+    /**
+     * Squares {x, y} of each pattern, in the orientation of the top left corner.<br>
+     * The first square is the least significant digit.
+     */
+    private static final int[][][] PATTERNS = {
+            { { 0, 0 }, { 1, 0 }, { 2, 0 }, { 3, 0 }, { 4, 0 }, { 5, 0 }, { 6, 0 }, { 7, 0 } },
+            { { 0, 0 }, { 1, 0 }, { 2, 0 }, { 0, 1 }, { 1, 1 }, { 2, 1 }, { 0, 2 }, { 1, 2 }, { 2, 2 } },
+            { { 0, 0 }, { 1, 0 }, { 2, 0 }, { 3, 0 }, { 4, 0 }, { 0, 1 }, { 1, 1 }, { 2, 1 }, { 3, 1 }, { 4, 1 } },
+            { { 0, 0 }, { 1, 1 }, { 2, 2 }, { 3, 3 }, { 4, 4 }, { 5, 5 }, { 6, 6 }, { 7, 7 } },
+            { { 1, 0 }, { 2, 1 }, { 3, 2 }, { 4, 3 }, { 5, 4 }, { 6, 5 }, { 7, 6 } },
+            { { 2, 0 }, { 3, 1 }, { 4, 2 }, { 5, 3 }, { 6, 4 }, { 7, 5 } },
+            { { 3, 0 }, { 4, 1 }, { 5, 2 }, { 6, 3 }, { 7, 4 } },
+            { { 4, 0 }, { 5, 1 }, { 6, 2 }, { 7, 3 } },
+    };
+    // @formatter:on
+
+    /**
+     * Number of weights of each pattern, {@code 3} to the power of its number of squares.
+     */
+    private static final int[] SIZES = new int[PATTERNS.length];
+
+    /**
+     * Offset of the weight table of each pattern within the weights of a phase.
+     */
+    private static final int[] OFFSETS = new int[PATTERNS.length];
+
+    /**
+     * Number of weights per phase.
+     */
+    static final int PHASE_SIZE;
+
+    /**
+     * Pattern of each instance.
+     */
+    static final int[] INSTANCE_PATTERNS;
+
+    /**
+     * Bit indices of the squares of each instance, the first square being the least significant digit.
+     */
+    static final int[][] INSTANCE_SQUARES;
+
+    /**
+     * Offset of the weight table of each instance within the weights of a phase.
+     */
+    static final int[] INSTANCE_OFFSETS;
+
+    /**
+     * Instances covering each square, indexed by bit index.
+     */
+    static final int[][] SQUARE_INSTANCES = new int[Game.DIM * Game.DIM][];
+
+    /**
+     * Value of a digit of the square in each instance of {@link #SQUARE_INSTANCES}, indexed by bit index.
+     */
+    static final int[][] SQUARE_POWERS = new int[Game.DIM * Game.DIM][];
+
+    static
+    {
+        int offset = 0;
+        for (int pattern = 0; pattern < PATTERNS.length; pattern++)
+        {
+            SIZES[pattern] = power(PATTERNS[pattern].length);
+            OFFSETS[pattern] = offset;
+            offset += SIZES[pattern];
+        }
+        PHASE_SIZE = offset;
+
+        List<Integer> patterns = new ArrayList<>();
+        List<int[]> instances = new ArrayList<>();
+        for (int pattern = 0; pattern < PATTERNS.length; pattern++)
+        {
+            List<Long> masks = new ArrayList<>();
+            for (int symmetry = 0; symmetry < 8; symmetry++)
+            {
+                int[] squares = new int[PATTERNS[pattern].length];
+                long mask = 0L;
+                for (int i = 0; i < squares.length; i++)
+                {
+                    squares[i] = transform(symmetry, PATTERNS[pattern][i][0], PATTERNS[pattern][i][1]);
+                    mask |= 1L << squares[i];
+                }
+                if (!masks.contains(mask))
+                {
+                    masks.add(mask);
+                    patterns.add(pattern);
+                    instances.add(squares);
+                }
+            }
+        }
+        INSTANCE_PATTERNS = new int[patterns.size()];
+        INSTANCE_SQUARES = instances.toArray(new int[instances.size()][]);
+        INSTANCE_OFFSETS = new int[patterns.size()];
+        for (int instance = 0; instance < INSTANCE_PATTERNS.length; instance++)
+        {
+            INSTANCE_PATTERNS[instance] = patterns.get(instance);
+            INSTANCE_OFFSETS[instance] = OFFSETS[patterns.get(instance)];
+        }
+
+        for (int square = 0; square < SQUARE_INSTANCES.length; square++)
+        {
+            List<int[]> covering = new ArrayList<>();
+            for (int instance = 0; instance < INSTANCE_SQUARES.length; instance++)
+            {
+                int[] squares = INSTANCE_SQUARES[instance];
+                for (int i = 0; i < squares.length; i++)
+                {
+                    if (squares[i] == square)
+                    {
+                        covering.add(new int[] { instance, power(i) });
+                    }
+                }
+            }
+            SQUARE_INSTANCES[square] = new int[covering.size()];
+            SQUARE_POWERS[square] = new int[covering.size()];
+            for (int i = 0; i < covering.size(); i++)
+            {
+                SQUARE_INSTANCES[square][i] = covering.get(i)[0];
+                SQUARE_POWERS[square][i] = covering.get(i)[1];
+            }
+        }
+    }
+
+    /**
+     * Weights from the view of {@link Player#DARK}, indexed by phase and by the offset of the pattern plus the index
+     * of the instance.
+     */
+    final short[][] weights;
+
+
+    /**
+     * Returns new weights.
+     *
+     * @param weights weights, indexed by phase and by the offset of the pattern plus the index of the instance
+     */
+    Patterns(short[][] weights)
+    {
+        super();
+        this.weights = weights;
+    }
+
+
+    /**
+     * Loads the weights from the {@link #RESOURCE} on the class path, or derives them from {@link AI#MATRIX}, if there
+     * is no such resource.
+     *
+     * @return weights
+     * @throws IOException if the resource can't be read
+     */
+    public static Patterns load() throws IOException
+    {
+        Patterns patterns = readResource();
+        return (patterns == null) ? fromMatrix() : patterns;
+    }
+
+
+    /**
+     * Returns the weights of the {@link #RESOURCE} on the class path, which are read once and shared by all engines.
+     *
+     * @return weights, or {@code null}, if there is no such resource
+     * @throws IllegalStateException if the resource can't be read
+     */
+    public static synchronized Patterns getDefault()
+    {
+        if (!defaultLoaded)
+        {
+            try
+            {
+                defaultPatterns = readResource();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("can't read " + RESOURCE, e);
+            }
+            defaultLoaded = true;
+        }
+        return defaultPatterns;
+    }
+
+
+    /**
+     * Returns the weights of an engine option, as given to {@link Tournament} and {@link SelfPlay}.
+     *
+     * @param option {@value #MATRIX_OPTION} to evaluate with {@link AI#MATRIX}, or the path of a weight file
+     * @return weights, or {@code null} for {@value #MATRIX_OPTION}
+     * @throws IOException if the weight file can't be read
+     */
+    public static Patterns parse(String option) throws IOException
+    {
+        if (option.equals(MATRIX_OPTION))
+        {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(Paths.get(option)))
+        {
+            return read(in);
+        }
+    }
+
+
+    /**
+     * Reads the weights from the {@link #RESOURCE} on the class path.
+     *
+     * @return weights, or {@code null}, if there is no such resource
+     * @throws IOException if the resource can't be read
+     */
+    private static Patterns readResource() throws IOException
+    {
+        InputStream in = Patterns.class.getClassLoader().getResourceAsStream(RESOURCE);
+        if (in == null)
+        {
+            return null;
+        }
+        try (InputStream stream = in)
+        {
+            return read(stream);
+        }
+    }
+
+
+    /**
+     * Reads weights written by {@link #write(OutputStream)}.
+     *
+     * @param in stream to read from, is not closed
+     * @return weights
+     * @throws IOException if the stream can't be read, or is no weight file of the current patterns
+     */
+    public static Patterns read(InputStream in) throws IOException
+    {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if ((data.readInt() != MAGIC) || (data.readInt() != VERSION))
+        {
+            throw new IOException("no weight file of version " + VERSION);
+        }
+        if ((data.readInt() != PHASES) || (data.readInt() != PATTERNS.length))
+        {
+            throw new IOException("weight file does not match the patterns");
+        }
+        for (int[][] pattern : PATTERNS)
+        {
+            if (data.readInt() != pattern.length)
+            {
+                throw new IOException("weight file does not match the patterns");
+            }
+        }
+        short[][] weights = new short[PHASES][PHASE_SIZE];
+        for (short[] phase : weights)
+        {
+            for (int i = 0; i < phase.length; i++)
+            {
+                phase[i] = data.readShort();
+            }
+        }
+        return new Patterns(weights);
+    }
+
+
+    /**
+     * Writes the weights.<br>
+     * The format is a header of {@code int}s: a magic number, the version, the number of phases, the number of
+     * patterns and the number of squares of each pattern; followed by all weights as {@code short}s, phase by phase
+     * and pattern by pattern.
+     *
+     * @param out stream to write to, is flushed but not closed
+     * @throws IOException if the stream can't be written
+     */
+    public void write(OutputStream out) throws IOException
+    {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(PHASES);
+        data.writeInt(PATTERNS.length);
+        for (int[][] pattern : PATTERNS)
+        {
+            data.writeInt(pattern.length);
+        }
+        for (short[] phase : weights)
+        {
+            for (short weight : phase)
+            {
+                data.writeShort(weight);
+            }
+        }
+        data.flush();
+    }
+
+
+    /**
+     * Returns weights, which evaluate all positions exactly like {@link Game#getPositionalScore(Player)}.<br>
+     * Every square is given to one digit of one pattern, and that digit is weighted like the square in
+     * {@link AI#MATRIX}. This is possible, as the matrix is symmetric.
+     *
+     * @return weights
+     */
+    public static Patterns fromMatrix()
+    {
+        long covered = 0L;
+        short[] phase = new short[PHASE_SIZE];
+        for (int pattern = 0; pattern < PATTERNS.length; pattern++)
+        {
+            int[] digits = new int[PATTERNS[pattern].length];
+            for (int i = 0; i < digits.length; i++)
+            {
+                long squares = 0L;
+                int count = 0;
+                for (int instance = 0; instance < INSTANCE_SQUARES.length; instance++)
+                {
+                    if (INSTANCE_PATTERNS[instance] == pattern)
+                    {
+                        squares |= 1L << INSTANCE_SQUARES[instance][i];
+                        count++;
+                    }
+                }
+                if (((squares & covered) == 0L) && (Long.bitCount(squares) == count))
+                {
+                    covered |= squares;
+                    digits[i] = Positional.WEIGHTS[Long.numberOfTrailingZeros(squares)];
+                }
+            }
+            for (int index = 0; index < SIZES[pattern]; index++)
+            {
+                int score = 0;
+                for (int i = 0, rest = index; i < digits.length; i++, rest /= 3)
+                {
+                    score += (rest % 3 == 1) ? digits[i] : (rest % 3 == 2) ? -digits[i] : 0;
+                }
+                phase[OFFSETS[pattern] + index] = (short)score;
+            }
+        }
+        if (covered != -1L)
+        {
+            throw new IllegalStateException("patterns do not cover the board");
+        }
+        short[][] weights = new short[PHASES][];
+        for (int i = 0; i < PHASES; i++)
+        {
+            weights[i] = phase.clone();
+        }
+        return new Patterns(weights);
+    }
+
+
+    /**
+     * Returns the phase of a position.
+     *
+     * @param empties number of empty squares
+     * @return phase in range {@code [0, }{@link #PHASES}{@code )}
+     */
+    static int phase(int empties)
+    {
+        return Math.min((Game.DIM * Game.DIM - 4 - empties) / PHASE_LENGTH, PHASES - 1);
+    }
+
+
+    /**
+     * Returns the number of pattern instances.
+     *
+     * @return number of instances
+     */
+    static int getInstances()
+    {
+        return INSTANCE_PATTERNS.length;
+    }
+
+
+    /**
+     * Returns {@code 3} to the power of {@code exponent}.
+     *
+     * @param exponent exponent
+     * @return power
+     */
+    private static int power(int exponent)
+    {
+        int power = 1;
+        for (int i = 0; i < exponent; i++)
+        {
+            power *= 3;
+        }
+        return power;
+    }
+
+
+    /**
+     * Transforms a square by one of the 8 symmetries of the board.<br>
+     * The first 4 symmetries are the rotations, the last 4 the rotations of the reflection.
+     *
+     * @param symmetry number of the symmetry, in range {@code [0, 8)}
+     * @param x column of the square
+     * @param y row of the square
+     * @return bit index of the transformed square
+     */
+    private static int transform(int symmetry, int x, int y)
+    {
+        if (symmetry >= 4)
+        {
+            x = Game.DIM - 1 - x;
+        }
+        for (int i = 0; i < (symmetry & 3); i++)
+        {
+            int t = x;
+            x = Game.DIM - 1 - y;
+            y = t;
+        }
+        return Bitboard.square(x, y);
+    }
+
+}
@@ -0,0 +1,273 @@
+package othello;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * Counts the positions reachable by a number of moves, which checks and measures the move generation of {@link Game}.
+ * <br>
+ * Moves are walked by {@link Game#makeMove(int)} and {@link Game#unmakeMove(int, long)}, so passes and the end of the
+ * game are handled by the game itself: a pass is not a move, and a position, in which the game is over, is a leaf
+ * even if moves are left.
+ *
+ * @author yolo
+ */
+public final class Perft
+{
+
+    /**
+     * Default size of the table of {@link Mode#HASHED} in megabytes.
+     */
+    public static final int DEFAULT_TABLE_SIZE = 64;
+
+    /**
+     * Minimum number of moves left, at which {@link Mode#PARALLEL} splits a position into tasks.
+     */
+    private static final int SPLIT_DEPTH = 4;
+
+    /**
+     * Minimum number of moves left, at which {@link Mode#HASHED} stores counts.
+     */
+    private static final int HASH_DEPTH = 2;
+
+    /**
+     * Bytes per entry of the table of {@link Mode#HASHED}.
+     */
+    private static final int ENTRY_SIZE = 2 * Long.BYTES;
+
+    /**
+     * Multiplier of the number of moves left in {@link #keys}.
+     */
+    private static final long DEPTH_KEY = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Keys of the stored counts: the hash of the position xor the number of moves left times {@link #DEPTH_KEY}.
+     */
+    private final long[] keys;
+
+    /**
+     * Stored counts, {@code 0} for an empty entry.
+     */
+    private final long[] counts;
+
+
+    /**
+     * Returns a new counter with a table of {@link #DEFAULT_TABLE_SIZE} megabytes.
+     */
+    public Perft()
+    {
+        this(DEFAULT_TABLE_SIZE);
+    }
+
+
+    /**
+     * Returns a new counter.
+     *
+     * @param megabytes size of the table of {@link Mode#HASHED}, is rounded down to a power of two entries
+     * @throws IllegalArgumentException if {@code megabytes} is lower than 1
+     */
+    public Perft(int megabytes)
+    {
+        super();
+        if (megabytes < 1)
+        {
+            throw new IllegalArgumentException("megabytes have to be 1 or more");
+        }
+        int entries = Integer.highestOneBit((int)Math.min((long)megabytes * 1024 * 1024 / ENTRY_SIZE, 1 << 30));
+        keys = new long[entries];
+        counts = new long[entries];
+    }
+
+
+    /**
+     * Counts the positions reachable by a number of moves.
+     *
+     * @param game position to start from, is not changed
+     * @param depth number of moves
+     * @param mode how to count
+     * @return number of leaves
+     * @throws IllegalArgumentException if {@code depth} is negative
+     */
+    public long count(Game game, int depth, Mode mode)
+    {
+        if (depth < 0)
+        {
+            throw new IllegalArgumentException("depth must not be negative");
+        }
+        Game clone = game.clone();
+        switch (mode)
+        {
+            case PARALLEL:
+                return ForkJoinPool.commonPool().invoke(new Task(clone, depth));
+            case HASHED:
+                return hashed(clone, depth);
+            default:
+                return count(clone, depth);
+        }
+    }
+
+
+    /**
+     * Counts leaves on a single thread.
+     *
+     * @param game position, is changed during the count and restored afterwards
+     * @param depth number of moves left
+     * @return number of leaves
+     */
+    static long count(Game game, int depth)
+    {
+        if (game.isGameOver() || (depth == 0))
+        {
+            return 1L;
+        }
+        long moves = game.getMoves();
+        if (depth == 1)
+        {
+            return Long.bitCount(moves);
+        }
+        long leaves = 0L;
+        for (; moves != 0L; moves &= moves - 1L)
+        {
+            int square = Long.numberOfTrailingZeros(moves);
+            long flips = game.makeMove(square);
+            leaves += count(game, depth - 1);
+            game.unmakeMove(square, flips);
+        }
+        return leaves;
+    }
+
+
+    /**
+     * Counts leaves on a single thread, looking up the counts of positions reached before.
+     *
+     * @param game position, is changed during the count and restored afterwards
+     * @param depth number of moves left
+     * @return number of leaves
+     */
+    private long hashed(Game game, int depth)
+    {
+        if (depth < HASH_DEPTH)
+        {
+            return count(game, depth);
+        }
+        if (game.isGameOver())
+        {
+            return 1L;
+        }
+        long key = game.getHash() ^ (depth * DEPTH_KEY);
+        int index = (int)(key ^ (key >>> 32)) & (keys.length - 1);
+        if ((keys[index] == key) && (counts[index] != 0L))
+        {
+            return counts[index];
+        }
+        long leaves = 0L;
+        for (long moves = game.getMoves(); moves != 0L; moves &= moves - 1L)
+        {
+            int square = Long.numberOfTrailingZeros(moves);
+            long flips = game.makeMove(square);
+            leaves += hashed(game, depth - 1);
+            game.unmakeMove(square, flips);
+        }
+        keys[index] = key;
+        counts[index] = leaves;
+        return leaves;
+    }
+
+
+    /**
+     * Prints the counts of the start position up to a depth, with the time taken and the positions per second.
+     *
+     * @param args depth, and optionally the mode: {@code single}, {@code parallel} or {@code hashed}
+     */
+    public static void main(String[] args)
+    {
+        if ((args.length < 1) || (args.length > 2))
+        {
+            System.err.println("usage: Perft <depth> [single|parallel|hashed]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        Mode mode = (args.length > 1) ? Mode.valueOf(args[1].toUpperCase()) : Mode.SINGLE;
+        Perft perft = new Perft();
+        for (int d = 1; d <= depth; d++)
+        {
+            long start = System.nanoTime();
+            long leaves = perft.count(new Game(), d, mode);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("perft(%d) = %d, %.3f s, %.0f positions/s%n", d, leaves, seconds, leaves / seconds);
+        }
+    }
+
+    /**
+     * How to count.
+     */
+    public enum Mode
+    {
+        /**
+         * Walks all moves on the calling thread.
+         */
+        SINGLE,
+
+        /**
+         * Splits the moves near the root into tasks of the common {@link ForkJoinPool}.
+         */
+        PARALLEL,
+
+        /**
+         * Walks all moves on the calling thread, and stores the counts of positions, so positions reached by
+         * different orders of moves are only counted once. Keys are 64-bit hashes, so a collision could give a wrong
+         * count, which is very unlikely. A {@link Perft} must only count in this mode on one thread at a time.
+         */
+        HASHED
+    }
+
+    /**
+     * Counts the leaves below a position, splitting into a task per move while enough moves are left.
+     */
+    private static final class Task extends RecursiveTask<Long>
+    {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Game game;
+
+        private final int depth;
+
+
+        private Task(Game game, int depth)
+        {
+            super();
+            this.game = game;
+            this.depth = depth;
+        }
+
+
+        @Override
+        protected Long compute()
+        {
+            if ((depth < SPLIT_DEPTH) || game.isGameOver())
+            {
+                return count(game, depth);
+            }
+            List<Task> tasks = new ArrayList<>();
+            for (long moves = game.getMoves(); moves != 0L; moves &= moves - 1L)
+            {
+                Game child = game.clone();
+                child.makeMove(Long.numberOfTrailingZeros(moves));
+                tasks.add(new Task(child, depth - 1));
+            }
+            long leaves = 0L;
+            for (Task task : ForkJoinTask.invokeAll(tasks))
+            {
+                leaves += task.join();
+            }
+            return leaves;
+        }
+    }
+
+}
@@ -0,0 +1,240 @@
+package othello;
+
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+
+/**
+ * Searches on the opponent's time.<br>
+ * After the engine has moved, the ponderer predicts the reply of the opponent, and searches the answer to it in the
+ * background. If the opponent plays the predicted reply, the answer is taken from the running or finished search,
+ * instead of searching again from scratch; otherwise the background search is cancelled.
+ * <p>
+ * The ponderer has its own {@link AI}, so a cancelled search, which is still unwinding, never shares state with the
+ * search of the engine; background searches lock the A.I., so they never overlap each other either.<br>
+ * The reply is predicted by a search one ply shallower than the engine's, which is the depth the engine itself
+ * searched the reply with.
+ *
+ * @author yolo
+ */
+public final class Ponderer
+{
+
+    /**
+     * Move returned if the position wasn't pondered on.
+     */
+    public static final int NO_MOVE = TranspositionTable.NO_MOVE;
+
+    /**
+     * Engine searching in the background, only used by this ponderer.
+     */
+    private final AI ai;
+
+    /**
+     * Executor running the background search.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Running or finished background search, or {@code null} if there is none.
+     */
+    private Future<Integer> task;
+
+    /**
+     * Search depth of the {@link #task}.
+     */
+    private int ply;
+
+    /**
+     * Position after the predicted reply, or {@code null} while it is being predicted.<br>
+     * Written by the background search, and read when the answer is taken.
+     */
+    private volatile Game predicted;
+
+    /**
+     * Number of answers taken from the background search.
+     */
+    private int hits;
+
+    /**
+     * Number of background searches cancelled before they were finished.
+     */
+    private int misses;
+
+
+    /**
+     * Returns a new ponderer.
+     *
+     * @param ai engine searching in the background, must not be used by anyone else
+     * @param executor executor running the background search, its threads are interrupted to cancel it
+     */
+    public Ponderer(AI ai, ExecutorService executor)
+    {
+        super();
+        this.ai = ai;
+        this.executor = executor;
+    }
+
+
+    /**
+     * Starts pondering on a position, in which the opponent is to move.<br>
+     * A previous background search is cancelled.
+     *
+     * @param game position after the engine's move, is not changed
+     * @param ply search depth of the engine
+     * @param endgameEmpties number of empty squares, at which the engine solves the game, see
+     *            {@link AI#setEndgameEmpties(int)}; set once the A.I. is locked, as a cancelled search may still run
+     * @throws IllegalArgumentException if {@code endgameEmpties} is negative
+     */
+    public synchronized void ponder(Game game, int ply, int endgameEmpties)
+    {
+        if (endgameEmpties < 0)
+        {
+            throw new IllegalArgumentException("endgameEmpties must not be negative");
+        }
+        cancel();
+        if (game.isGameOver())
+        {
+            return;
+        }
+        Game clone = game.clone();
+        Player opponent = clone.getCurrentPlayer();
+        this.ply = ply;
+        predicted = null;
+        task = executor.submit(() -> {
+            synchronized (ai)
+            {
+                ai.setEndgameEmpties(endgameEmpties);
+                ai.move(clone, Math.max(1, ply - 1));
+                if (clone.isGameOver() || (clone.getCurrentPlayer() == opponent))
+                {
+                    return NO_MOVE;
+                }
+                Game answer = clone.clone();
+                predicted = clone;
+                ai.move(answer, ply);
+                return Long.numberOfTrailingZeros(occupied(answer) & ~occupied(clone));
+            }
+        });
+    }
+
+
+    /**
+     * Takes the answer to a position from the background search.<br>
+     * If the position is the predicted one, this waits for the background search to finish, which takes less time
+     * than a new search, as it started earlier. Otherwise the background search is cancelled. If the calling thread is
+     * interrupted while waiting, the background search is cancelled, and the interrupt status is kept.
+     *
+     * @param game position, in which the engine is to move, is not changed
+     * @param ply search depth of the engine
+     * @return bit index {@code y * }{@link Game#DIM}{@code  + x} of the move, or {@link #NO_MOVE} if the
+     *         position wasn't pondered on
+     */
+    public int take(Game game, int ply)
+    {
+        Future<Integer> taken;
+        synchronized (this)
+        {
+            Game position = predicted;
+            if ((task == null) || (ply != this.ply) || (position == null) || !isSamePosition(game, position))
+            {
+                cancel();
+                return NO_MOVE;
+            }
+            // waits without the lock, so cancel() never blocks
+            taken = task;
+            task = null;
+            predicted = null;
+        }
+        try
+        {
+            int move = taken.get();
+            synchronized (this)
+            {
+                hits++;
+            }
+            return move;
+        }
+        catch (InterruptedException e)
+        {
+            taken.cancel(true);
+            Thread.currentThread().interrupt();
+            return NO_MOVE;
+        }
+        catch (ExecutionException | CancellationException e)
+        {
+            return NO_MOVE;
+        }
+    }
+
+
+    /**
+     * Cancels the background search, if there is one.<br>
+     * Has to be called whenever the game changes other than by a move of the opponent, e.g. by an undo.
+     */
+    public synchronized void cancel()
+    {
+        if (task != null)
+        {
+            if (task.cancel(true))
+            {
+                misses++;
+            }
+            task = null;
+            predicted = null;
+        }
+    }
+
+
+    /**
+     * Returns the number of answers taken from the background search.
+     *
+     * @return number of hits
+     */
+    public synchronized int getHits()
+    {
+        return hits;
+    }
+
+
+    /**
+     * Returns the number of background searches cancelled before they were finished.
+     *
+     * @return number of misses
+     */
+    public synchronized int getMisses()
+    {
+        return misses;
+    }
+
+
+    /**
+     * Tells if two games have the same pieces and the same current player.
+     *
+     * @param game first game
+     * @param other second game
+     * @return {@code true}, if the positions are the same
+     */
+    private static boolean isSamePosition(Game game, Game other)
+    {
+        return (game.getHash() == other.getHash()) && (game.getPieces(Player.DARK) == other.getPieces(Player.DARK))
+                && (game.getPieces(Player.LIGHT) == other.getPieces(Player.LIGHT))
+                && (game.getCurrentPlayer() == other.getCurrentPlayer());
+    }
+
+
+    /**
+     * Returns all occupied squares.
+     *
+     * @param game game
+     * @return mask of all pieces
+     */
+    private static long occupied(Game game)
+    {
+        return game.getPieces(Player.DARK) | game.getPieces(Player.LIGHT);
+    }
+
+}
@@ -0,0 +1,69 @@
+package othello;
+
+
+/**
+ * Positional weights of the squares, for scores kept up to date on each move.<br>
+ * The weights are the ones of {@link AI#MATRIX}.
+ *
+ * @author yolo
+ */
+final class Positional
+{
+
+    /**
+     * {@link AI#MATRIX}, indexed by bit index.
+     */
+    static final int[] WEIGHTS = new int[Game.DIM * Game.DIM];
+
+    static
+    {
+        for (int x = 0; x < Game.DIM; x++)
+        {
+            for (int y = 0; y < Game.DIM; y++)
+            {
+                WEIGHTS[Bitboard.square(x, y)] = AI.MATRIX[x][y];
+            }
+        }
+    }
+
+
+    private Positional()
+    {
+        super();
+    }
+
+
+    /**
+     * Calculates the score of pieces from scratch.
+     *
+     * @param pieces mask of the pieces
+     * @return sum of the weights of all pieces
+     */
+    static int score(long pieces)
+    {
+        int score = 0;
+        for (; pieces != 0L; pieces &= pieces - 1L)
+        {
+            score += WEIGHTS[Long.numberOfTrailingZeros(pieces)];
+        }
+        return score;
+    }
+
+
+    /**
+     * Returns the change of the score of {@link Player#DARK} minus the one of {@link Player#LIGHT}, caused by putting a
+     * piece and turning pieces.<br>
+     * Subtracting the same change takes the move back.
+     *
+     * @param player player who puts the piece
+     * @param square bit index of the put piece
+     * @param flips mask of all turned pieces
+     * @return value to add to the score
+     */
+    static int move(Player player, int square, long flips)
+    {
+        int score = WEIGHTS[square] + 2 * score(flips);
+        return (player == Player.DARK) ? score : -score;
+    }
+
+}
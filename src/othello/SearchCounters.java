@@ -0,0 +1,75 @@
+package othello;
+
+
+/**
+ * Counters of a search, which are only written by a single thread.<br>
+ * Each searching thread has its own counters, which are summed up after the search, so counting needs no
+ * synchronization.
+ *
+ * @author yolo
+ * @see SearchStatistics
+ */
+final class SearchCounters
+{
+
+    /**
+     * Number of visited positions.
+     */
+    long nodes;
+
+    /**
+     * Number of visited positions, whose moves were searched.
+     */
+    long interiorNodes;
+
+    /**
+     * Number of positions, whose search was cut off by a move.
+     */
+    long cutoffs;
+
+    /**
+     * Number of {@link #cutoffs} by the first move searched.
+     */
+    long firstMoveCutoffs;
+
+    /**
+     * Number of transposition table probes.
+     */
+    long probes;
+
+    /**
+     * Number of {@link #probes}, which found an entry.
+     */
+    long hits;
+
+
+    /**
+     * Resets all counters to {@code 0}.
+     */
+    void clear()
+    {
+        nodes = 0L;
+        interiorNodes = 0L;
+        cutoffs = 0L;
+        firstMoveCutoffs = 0L;
+        probes = 0L;
+        hits = 0L;
+    }
+
+
+    /**
+     * Adds other counters to these.
+     *
+     * @param other counters to add
+     */
+    void add(SearchCounters other)
+    {
+        nodes += other.nodes;
+        interiorNodes += other.interiorNodes;
+        cutoffs += other.cutoffs;
+        firstMoveCutoffs += other.firstMoveCutoffs;
+        probes += other.probes;
+        hits += other.hits;
+    }
+
+}
@@ -0,0 +1,184 @@
+package othello;
+
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+/**
+ * Collects the {@link SearchStatistics} of engines, and exposes them as a JMX MBean.<br>
+ * Engines report each search once it is finished, so recording is cheap compared to the search itself.
+ *
+ * @author yolo
+ * @see AI#setMonitor(SearchMonitor)
+ * @see AlphaBetaAI#setMonitor(SearchMonitor)
+ */
+public final class SearchMonitor implements SearchMonitorMBean
+{
+
+    /**
+     * Domain of the names of registered monitors.
+     */
+    public static final String DOMAIN = "othello";
+
+    private long searches;
+
+    private long totalNodes;
+
+    private long totalNanos;
+
+    private long maxNanos;
+
+    private SearchStatistics last = SearchStatistics.NONE;
+
+
+    /**
+     * Registers the monitor with the platform MBean server, as {@code othello:type=SearchMonitor,name=<name>}.
+     *
+     * @param name name of the monitor
+     * @throws JMException if the monitor can't be registered, e.g. if the name is already taken
+     */
+    public void register(String name) throws JMException
+    {
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=SearchMonitor,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    }
+
+
+    /**
+     * Records a finished search.
+     *
+     * @param statistics statistics of the search
+     */
+    public synchronized void record(SearchStatistics statistics)
+    {
+        searches++;
+        totalNodes += statistics.getNodes();
+        totalNanos += statistics.getNanos();
+        maxNanos = Math.max(maxNanos, statistics.getNanos());
+        last = statistics;
+    }
+
+
+    /**
+     * Returns the statistics of the last recorded search.
+     *
+     * @return statistics, of {@link SearchStatistics.Source#NONE} if there was no search since the last reset
+     */
+    public synchronized SearchStatistics getLast()
+    {
+        return last;
+    }
+
+
+    @Override
+    public synchronized long getSearches()
+    {
+        return searches;
+    }
+
+
+    @Override
+    public synchronized long getTotalNodes()
+    {
+        return totalNodes;
+    }
+
+
+    @Override
+    public synchronized double getAverageNodesPerSecond()
+    {
+        return (totalNanos == 0L) ? 0.0 : totalNodes * 1e9 / totalNanos;
+    }
+
+
+    @Override
+    public synchronized double getAverageMillis()
+    {
+        return (searches == 0L) ? 0.0 : totalNanos / 1e6 / searches;
+    }
+
+
+    @Override
+    public synchronized double getMaxMillis()
+    {
+        return maxNanos / 1e6;
+    }
+
+
+    @Override
+    public synchronized String getLastSource()
+    {
+        return last.getSource().name();
+    }
+
+
+    @Override
+    public synchronized int getLastDepth()
+    {
+        return last.getDepth();
+    }
+
+
+    @Override
+    public synchronized long getLastNodes()
+    {
+        return last.getNodes();
+    }
+
+
+    @Override
+    public synchronized double getLastMillis()
+    {
+        return last.getNanos() / 1e6;
+    }
+
+
+    @Override
+    public synchronized double getLastNodesPerSecond()
+    {
+        return last.getNodesPerSecond();
+    }
+
+
+    @Override
+    public synchronized double getLastEffectiveBranchingFactor()
+    {
+        return last.getEffectiveBranchingFactor();
+    }
+
+
+    @Override
+    public synchronized double getLastCutoffRate()
+    {
+        return last.getCutoffRate();
+    }
+
+
+    @Override
+    public synchronized double getLastFirstMoveCutoffRate()
+    {
+        return last.getFirstMoveCutoffRate();
+    }
+
+
+    @Override
+    public synchronized double getLastHitRate()
+    {
+        return last.getHitRate();
+    }
+
+
+    @Override
+    public synchronized void reset()
+    {
+        searches = 0L;
+        totalNodes = 0L;
+        totalNanos = 0L;
+        maxNanos = 0L;
+        last = SearchStatistics.NONE;
+    }
+
+}
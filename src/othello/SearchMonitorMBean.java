@@ -0,0 +1,129 @@
+package othello;
+
+
+/**
+ * Management interface of a {@link SearchMonitor}.
+ *
+ * @author yolo
+ */
+public interface SearchMonitorMBean
+{
+
+    /**
+     * Returns the number of searches since the last reset.
+     *
+     * @return number of searches
+     */
+    long getSearches();
+
+
+    /**
+     * Returns the number of nodes of all searches since the last reset.
+     *
+     * @return number of nodes
+     */
+    long getTotalNodes();
+
+
+    /**
+     * Returns the nodes per second of all searches since the last reset.
+     *
+     * @return nodes per second
+     */
+    double getAverageNodesPerSecond();
+
+
+    /**
+     * Returns the average time per search since the last reset.
+     *
+     * @return time in milliseconds
+     */
+    double getAverageMillis();
+
+
+    /**
+     * Returns the longest time of a search since the last reset.
+     *
+     * @return time in milliseconds
+     */
+    double getMaxMillis();
+
+
+    /**
+     * Returns how the last move was found.
+     *
+     * @return name of the {@link SearchStatistics.Source}
+     */
+    String getLastSource();
+
+
+    /**
+     * Returns the depth of the last search.
+     *
+     * @return depth in plies
+     */
+    int getLastDepth();
+
+
+    /**
+     * Returns the number of nodes of the last search.
+     *
+     * @return number of nodes
+     */
+    long getLastNodes();
+
+
+    /**
+     * Returns the time of the last search.
+     *
+     * @return time in milliseconds
+     */
+    double getLastMillis();
+
+
+    /**
+     * Returns the nodes per second of the last search.
+     *
+     * @return nodes per second
+     */
+    double getLastNodesPerSecond();
+
+
+    /**
+     * Returns the effective branching factor of the last search.
+     *
+     * @return effective branching factor
+     */
+    double getLastEffectiveBranchingFactor();
+
+
+    /**
+     * Returns the cutoff rate of the last search.
+     *
+     * @return cutoff rate in range {@code [0, 1]}
+     */
+    double getLastCutoffRate();
+
+
+    /**
+     * Returns the first move cutoff rate of the last search.
+     *
+     * @return first move cutoff rate in range {@code [0, 1]}
+     */
+    double getLastFirstMoveCutoffRate();
+
+
+    /**
+     * Returns the transposition table hit rate of the last search.
+     *
+     * @return hit rate in range {@code [0, 1]}
+     */
+    double getLastHitRate();
+
+
+    /**
+     * Resets all totals and the last search.
+     */
+    void reset();
+
+}
@@ -0,0 +1,198 @@
+package othello;
+
+
+/**
+ * Statistics of the search of one move.<br>
+ * Rates, which can't be calculated because nothing was counted, are {@code 0}.
+ *
+ * @author yolo
+ * @see AI#getStatistics()
+ * @see AlphaBetaAI#getStatistics()
+ */
+public final class SearchStatistics
+{
+
+    /**
+     * Statistics before the first search.
+     */
+    static final SearchStatistics NONE = new SearchStatistics(Source.NONE, 0, new SearchCounters(), 0L);
+
+    private final Source source;
+
+    private final int depth;
+
+    private final long nodes;
+
+    private final long interiorNodes;
+
+    private final long cutoffs;
+
+    private final long firstMoveCutoffs;
+
+    private final long probes;
+
+    private final long hits;
+
+    private final long nanos;
+
+
+    /**
+     * Returns new statistics.
+     *
+     * @param source how the move was found
+     * @param depth depth of the deepest completed search
+     * @param counters counters of all threads, summed up
+     * @param nanos elapsed time in nanoseconds
+     */
+    SearchStatistics(Source source, int depth, SearchCounters counters, long nanos)
+    {
+        super();
+        this.source = source;
+        this.depth = depth;
+        this.nodes = counters.nodes;
+        this.interiorNodes = counters.interiorNodes;
+        this.cutoffs = counters.cutoffs;
+        this.firstMoveCutoffs = counters.firstMoveCutoffs;
+        this.probes = counters.probes;
+        this.hits = counters.hits;
+        this.nanos = nanos;
+    }
+
+
+    /**
+     * Returns how the move was found.
+     *
+     * @return source of the move
+     */
+    public Source getSource()
+    {
+        return source;
+    }
+
+
+    /**
+     * Returns the depth of the deepest completed search.<br>
+     * This is the number of empty squares for {@link Source#ENDGAME}, and {@code 0} for {@link Source#BOOK}.
+     *
+     * @return depth in plies
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+
+    /**
+     * Returns the number of visited positions, summed up over all threads.
+     *
+     * @return number of nodes
+     */
+    public long getNodes()
+    {
+        return nodes;
+    }
+
+
+    /**
+     * Returns the elapsed time.
+     *
+     * @return time in nanoseconds
+     */
+    public long getNanos()
+    {
+        return nanos;
+    }
+
+
+    /**
+     * Returns the number of visited positions per second.
+     *
+     * @return nodes per second
+     */
+    public double getNodesPerSecond()
+    {
+        return (nanos == 0L) ? 0.0 : nodes * 1e9 / nanos;
+    }
+
+
+    /**
+     * Returns the effective branching factor, the number of nodes to the power of one over the depth.
+     *
+     * @return effective branching factor
+     */
+    public double getEffectiveBranchingFactor()
+    {
+        return ((depth == 0) || (nodes == 0L)) ? 0.0 : Math.pow(nodes, 1.0 / depth);
+    }
+
+
+    /**
+     * Returns the share of the positions, whose moves were searched, which were cut off.
+     *
+     * @return cutoff rate in range {@code [0, 1]}
+     */
+    public double getCutoffRate()
+    {
+        return (interiorNodes == 0L) ? 0.0 : (double)cutoffs / interiorNodes;
+    }
+
+
+    /**
+     * Returns the share of the cutoffs, which were caused by the first move searched.<br>
+     * This shows the quality of the move ordering.
+     *
+     * @return first move cutoff rate in range {@code [0, 1]}
+     */
+    public double getFirstMoveCutoffRate()
+    {
+        return (cutoffs == 0L) ? 0.0 : (double)firstMoveCutoffs / cutoffs;
+    }
+
+
+    /**
+     * Returns the share of the transposition table probes, which found an entry.
+     *
+     * @return hit rate in range {@code [0, 1]}
+     */
+    public double getHitRate()
+    {
+        return (probes == 0L) ? 0.0 : (double)hits / probes;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s depth %d: %d nodes in %.1f ms, %.0f nodes/s, branching %.2f, cutoffs %.1f%% "
+                + "(first %.1f%%), hits %.1f%%", source, depth, nodes, nanos / 1e6, getNodesPerSecond(),
+                getEffectiveBranchingFactor(), 100.0 * getCutoffRate(), 100.0 * getFirstMoveCutoffRate(),
+                100.0 * getHitRate());
+    }
+
+    /**
+     * How a move was found.
+     */
+    public enum Source
+    {
+        /**
+         * No move was searched yet.
+         */
+        NONE,
+
+        /**
+         * The move was taken from the opening book.
+         */
+        BOOK,
+
+        /**
+         * The game was solved to the end.
+         */
+        ENDGAME,
+
+        /**
+         * The game tree was searched to a depth.
+         */
+        SEARCH
+    }
+
+}
@@ -0,0 +1,217 @@
+package othello;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Generates training data for the {@link Tuner}, by letting an {@link AlphaBetaAI} play against itself.<br>
+ * The first moves of each game are random, so the games differ. Every position of a game is written to a
+ * {@link Shard} together with the final result of the game. Each shard is played by one thread.<br>
+ * The players evaluate with the {@link Patterns#getDefault() default weights}, or with other {@link Patterns}, so each
+ * round of tuning can play with the weights of the round before.
+ *
+ * @author yolo
+ */
+public final class SelfPlay
+{
+
+    /**
+     * Default search depth of the players.
+     */
+    public static final int DEFAULT_DEPTH = 4;
+
+    /**
+     * Default number of random moves at the start of each game.
+     */
+    public static final int DEFAULT_RANDOM_MOVES = 8;
+
+    /**
+     * Number of games per shard.
+     */
+    private static final int GAMES_PER_SHARD = 1000;
+
+    /**
+     * Maximum number of empty squares, at which the players solve the game, so results are exact from then on.
+     */
+    private static final int ENDGAME_EMPTIES = 12;
+
+    /**
+     * Size of the transposition table of each thread in megabytes.
+     */
+    private static final int TABLE_SIZE = 4;
+
+    /**
+     * Search depth of the players.
+     */
+    private final int depth;
+
+    /**
+     * Number of random moves at the start of each game.
+     */
+    private final int randomMoves;
+
+    /**
+     * Weights of the players, or {@code null}, if they evaluate by {@link AI#MATRIX}.
+     */
+    private final Patterns patterns;
+
+
+    /**
+     * Returns a new generator, whose players evaluate with the {@link Patterns#getDefault() default weights}.
+     *
+     * @param depth search depth of the players
+     * @param randomMoves number of random moves at the start of each game
+     * @throws IllegalArgumentException if {@code depth} is lower than 1, or if {@code randomMoves} is negative
+     */
+    public SelfPlay(int depth, int randomMoves)
+    {
+        this(depth, randomMoves, Patterns.getDefault());
+    }
+
+
+    /**
+     * Returns a new generator.
+     *
+     * @param depth search depth of the players
+     * @param randomMoves number of random moves at the start of each game
+     * @param patterns weights of the players, or {@code null} to evaluate by {@link AI#MATRIX}
+     * @throws IllegalArgumentException if {@code depth} is lower than 1, or if {@code randomMoves} is negative
+     */
+    public SelfPlay(int depth, int randomMoves, Patterns patterns)
+    {
+        super();
+        if (depth < 1)
+        {
+            throw new IllegalArgumentException("depth has to be 1 or higher");
+        }
+        if (randomMoves < 0)
+        {
+            throw new IllegalArgumentException("random moves must not be negative");
+        }
+        this.depth = depth;
+        this.randomMoves = randomMoves;
+        this.patterns = patterns;
+    }
+
+
+    /**
+     * Plays games and writes their positions to a shard.<br>
+     * Positions, in which the game is over, are left out.
+     *
+     * @param file shard, must not exist
+     * @param games number of games
+     * @param seed seed of the random moves
+     * @return number of positions written
+     * @throws IOException if the shard can't be written, e.g. if it already exists
+     */
+    public long play(Path file, int games, long seed) throws IOException
+    {
+        Random random = new Random(seed);
+        TranspositionTable table = new TranspositionTable(TABLE_SIZE, TranspositionTable.Replacement.DEPTH_PREFERRED);
+        long[] dark = new long[Game.DIM * Game.DIM];
+        long[] light = new long[Game.DIM * Game.DIM];
+        long positions = 0L;
+        try (AlphaBetaAI ai = new AlphaBetaAI(table); Shard.Writer writer = new Shard.Writer(file))
+        {
+            ai.setEndgameEmpties(ENDGAME_EMPTIES);
+            ai.setPatterns(patterns);
+            for (int i = 0; i < games; i++)
+            {
+                Game game = new Game();
+                int length = 0;
+                while (!game.isGameOver())
+                {
+                    dark[length] = game.getPieces(Player.DARK);
+                    light[length] = game.getPieces(Player.LIGHT);
+                    length++;
+                    if (game.getPly() < randomMoves)
+                    {
+                        long moves = game.getMoves();
+                        for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--)
+                        {
+                            moves &= moves - 1L;
+                        }
+                        int square = Long.numberOfTrailingZeros(moves);
+                        game.put(square % Game.DIM, square / Game.DIM);
+                    }
+                    else
+                    {
+                        ai.move(game, depth);
+                    }
+                }
+                int result = game.getScore(Player.DARK) - game.getScore(Player.LIGHT);
+                for (int k = 0; k < length; k++)
+                {
+                    writer.write(dark[k], light[k], result);
+                }
+                positions += length;
+            }
+        }
+        return positions;
+    }
+
+
+    /**
+     * Plays games on all threads and writes them to shards in a directory.<br>
+     * New shards are numbered after the ones already in the directory, so data sets can be extended.
+     *
+     * @param args directory, number of games, and optionally the number of threads, the search depth, the number of
+     *            random moves and the weights of the players, see {@link Patterns#parse(String)}
+     * @throws Exception if a shard can't be written
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if ((args.length < 2) || (args.length > 6))
+        {
+            System.err.println("usage: SelfPlay <directory> <games> [threads] [depth] [random moves] [weights]");
+            System.err.println("weights: " + Patterns.MATRIX_OPTION + " or a weight file");
+            return;
+        }
+        Path directory = Paths.get(args[0]);
+        int games = Integer.parseInt(args[1]);
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int depth = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_DEPTH;
+        int randomMoves = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_RANDOM_MOVES;
+        Patterns patterns = (args.length > 5) ? Patterns.parse(args[5]) : Patterns.getDefault();
+        SelfPlay selfPlay = new SelfPlay(depth, randomMoves, patterns);
+        Files.createDirectories(directory);
+        int first = Shard.next(directory);
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<Long>> shards = new ArrayList<>();
+            for (int shard = first; games > 0; shard++)
+            {
+                Path file = directory.resolve(String.format("%05d", shard) + Shard.SUFFIX);
+                int count = Math.min(games, GAMES_PER_SHARD);
+                long seed = shard;
+                shards.add(executor.submit(() -> selfPlay.play(file, count, seed)));
+                games -= count;
+            }
+            long positions = 0L;
+            for (Future<Long> shard : shards)
+            {
+                positions += shard.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d positions in %d shards, %.1f s, %.0f positions/s%n", positions, shards.size(),
+                    seconds, positions / seconds);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,268 @@
+package othello;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * File of positions labelled with the outcome of their game, written by {@link SelfPlay} and read by {@link Tuner}.<br>
+ * The format is a header of two {@code int}s, a magic number and the version, followed by the positions up to the end
+ * of the file. Each position takes {@value #RECORD_SIZE} bytes: the pieces of {@link Player#DARK} and the ones of
+ * {@link Player#LIGHT} as {@code long}s, and the final number of pieces of {@link Player#DARK} minus the one of
+ * {@link Player#LIGHT} as {@code byte}. All values are big-endian.<br>
+ * Shards are written and read as streams, so a data set never has to fit into memory.
+ *
+ * @author yolo
+ */
+final class Shard
+{
+
+    /**
+     * File name suffix of shards.
+     */
+    static final String SUFFIX = ".shard";
+
+    /**
+     * Bytes of one position.
+     */
+    static final int RECORD_SIZE = 2 * Long.BYTES + 1;
+
+    /**
+     * Magic number at the beginning of a shard.
+     */
+    private static final int MAGIC = 0x4F545348;
+
+    /**
+     * Version of the shard format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size of the stream buffers in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+
+    private Shard()
+    {
+        super();
+    }
+
+
+    /**
+     * Lists all shards in a directory.
+     *
+     * @param directory directory
+     * @return shards, sorted by name
+     * @throws IOException if the directory can't be read
+     */
+    static List<Path> list(Path directory) throws IOException
+    {
+        try (Stream<Path> files = Files.list(directory))
+        {
+            return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+
+
+    /**
+     * Returns the number of the next shard in a directory, which is one more than the highest number of the shards
+     * named {@code <number>}{@value #SUFFIX}, so shards are never overwritten, even if there are gaps in the numbers.
+     *
+     * @param directory directory
+     * @return number of the next shard, {@code 0} if there are no numbered shards
+     * @throws IOException if the directory can't be read
+     */
+    static int next(Path directory) throws IOException
+    {
+        int next = 0;
+        for (Path file : list(directory))
+        {
+            String name = file.getFileName().toString();
+            String number = name.substring(0, name.length() - SUFFIX.length());
+            if (number.matches("[0-9]{1,9}"))
+            {
+                next = Math.max(next, Integer.parseInt(number) + 1);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Writes a shard.
+     */
+    static final class Writer implements Closeable
+    {
+
+        private final DataOutputStream out;
+
+
+        /**
+         * Creates a shard.
+         *
+         * @param file shard, must not exist
+         * @throws IOException if the file can't be written, e.g. if it already exists
+         */
+        Writer(Path file) throws IOException
+        {
+            super();
+            out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE_NEW), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+
+        /**
+         * Appends a position.
+         *
+         * @param dark pieces of {@link Player#DARK}
+         * @param light pieces of {@link Player#LIGHT}
+         * @param result final number of pieces of {@link Player#DARK} minus the one of {@link Player#LIGHT}
+         * @throws IOException if the file can't be written
+         */
+        void write(long dark, long light, int result) throws IOException
+        {
+            out.writeLong(dark);
+            out.writeLong(light);
+            out.writeByte(result);
+        }
+
+
+        @Override
+        public void close() throws IOException
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a shard, one position at a time.
+     */
+    static final class Reader implements Closeable
+    {
+
+        private final DataInputStream in;
+
+        private final byte[] record = new byte[RECORD_SIZE];
+
+        private final ByteBuffer view = ByteBuffer.wrap(record);
+
+        private long dark;
+
+        private long light;
+
+        private int result;
+
+
+        /**
+         * Opens a shard.
+         *
+         * @param file shard
+         * @throws IOException if the file can't be read, or is no shard
+         */
+        Reader(Path file) throws IOException
+        {
+            super();
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+            try
+            {
+                if ((in.readInt() != MAGIC) || (in.readInt() != VERSION))
+                {
+                    throw new IOException("no shard of version " + VERSION + ": " + file);
+                }
+            }
+            catch (IOException e)
+            {
+                in.close();
+                throw e;
+            }
+        }
+
+
+        /**
+         * Reads the next position.
+         *
+         * @return {@code true}, if a position was read, {@code false} at the end of the shard
+         * @throws IOException if the file can't be read, or ends within a position
+         */
+        boolean next() throws IOException
+        {
+            int first = in.read();
+            if (first < 0)
+            {
+                return false;
+            }
+            record[0] = (byte)first;
+            try
+            {
+                in.readFully(record, 1, RECORD_SIZE - 1);
+            }
+            catch (EOFException e)
+            {
+                throw new IOException("shard is truncated", e);
+            }
+            dark = view.getLong(0);
+            light = view.getLong(Long.BYTES);
+            result = record[2 * Long.BYTES];
+            return true;
+        }
+
+
+        /**
+         * Returns the pieces of {@link Player#DARK} of the current position.
+         *
+         * @return pieces
+         */
+        long getDark()
+        {
+            return dark;
+        }
+
+
+        /**
+         * Returns the pieces of {@link Player#LIGHT} of the current position.
+         *
+         * @return pieces
+         */
+        long getLight()
+        {
+            return light;
+        }
+
+
+        /**
+         * Returns the final number of pieces of {@link Player#DARK} minus the one of {@link Player#LIGHT} of the
+         * current position.
+         *
+         * @return difference of pieces
+         */
+        int getResult()
+        {
+            return result;
+        }
+
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+
+}
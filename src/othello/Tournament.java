@@ -0,0 +1,624 @@
+package othello;
+
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+
+/**
+ * Plays games between engines on all cores, without a GUI.<br>
+ * Games start from positions a few moves into the game, which are played twice with colours swapped. Each thread has
+ * its own instance of each engine, which it keeps for all its games.
+ *
+ * @author yolo
+ */
+public final class Tournament
+{
+
+    /**
+     * Default number of moves of the opening positions.
+     */
+    public static final int DEFAULT_OPENING_MOVES = 6;
+
+    /**
+     * Seed of the order of the opening positions.
+     */
+    private static final long SEED = 0x4F50454EL;
+
+    /**
+     * Usage of the engine configurations.
+     */
+    private static final String ENGINES = "engines: AI:<ply>, AI:<ms>ms, AI2, AI3:<ply>, "
+            + "AlphaBetaAI:<ply>[:<weights>], AlphaBetaAI:<ms>ms[:<weights>]; weights: " + Patterns.MATRIX_OPTION
+            + " or a weight file";
+
+    /**
+     * Opening positions, in the order they are played.
+     */
+    private final List<Game> openings;
+
+    /**
+     * Number of threads.
+     */
+    private final int threads;
+
+
+    /**
+     * Returns a new tournament.
+     *
+     * @param threads number of threads
+     * @param openingMoves number of moves of the opening positions
+     * @throws IllegalArgumentException if {@code threads} is lower than 1, or if {@code openingMoves} is negative
+     */
+    public Tournament(int threads, int openingMoves)
+    {
+        super();
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("threads have to be 1 or more");
+        }
+        if (openingMoves < 0)
+        {
+            throw new IllegalArgumentException("opening moves must not be negative");
+        }
+        this.threads = threads;
+        this.openings = openings(openingMoves);
+    }
+
+
+    /**
+     * Plays games between two engines.<br>
+     * Game {@code i} starts from opening {@code i / 2}, and the first engine is {@link Player#DARK} in even games. If
+     * there are more games than openings, the openings are played again.
+     *
+     * @param first first engine
+     * @param second second engine
+     * @param games number of games
+     * @return result from the view of {@code first}
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    public Result play(Entrant first, Entrant second, int games) throws InterruptedException
+    {
+        Result result = new Result(first, second);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < games; i++)
+            {
+                Game opening = openings.get((i / 2) % openings.size());
+                boolean firstIsDark = (i % 2) == 0;
+                futures.add(executor.submit(() -> play(result, opening.clone(), firstIsDark)));
+            }
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException(e.getCause());
+        }
+        finally
+        {
+            // after a failure, the other games are cancelled, and they must end before their engines are shut down
+            executor.shutdownNow();
+            try
+            {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            finally
+            {
+                first.shutdown();
+                second.shutdown();
+            }
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+
+    /**
+     * Plays one game.
+     *
+     * @param result result to add the game to
+     * @param game opening position
+     * @param firstIsDark tells if the first engine plays {@link Player#DARK}
+     */
+    private static void play(Result result, Game game, boolean firstIsDark)
+    {
+        Player first = firstIsDark ? Player.DARK : Player.LIGHT;
+        Engine[] engines = { result.first.get(), result.second.get() };
+        long[] nanos = new long[2];
+        int[] moves = new int[2];
+        while (!game.isGameOver())
+        {
+            int engine = (game.getCurrentPlayer() == first) ? 0 : 1;
+            long start = System.nanoTime();
+            game = engines[engine].move(game);
+            nanos[engine] += System.nanoTime() - start;
+            moves[engine]++;
+        }
+        result.add(game.getScore(first) - game.getScore(first.getEnemy()), nanos, moves);
+    }
+
+
+    /**
+     * Returns all positions a number of moves into the game, in a fixed random order.<br>
+     * Of positions, which are symmetric to each other, only one is kept.
+     *
+     * @param moves number of moves
+     * @return positions, in which the game is not over
+     */
+    private static List<Game> openings(int moves)
+    {
+        List<Game> openings = new ArrayList<>();
+        openings.add(new Game());
+        for (int ply = 0; ply < moves; ply++)
+        {
+            Set<Long> seen = new HashSet<>();
+            List<Game> next = new ArrayList<>();
+            for (Game game : openings)
+            {
+                for (long squares = game.getMoves(); squares != 0L; squares &= squares - 1L)
+                {
+                    int square = Long.numberOfTrailingZeros(squares);
+                    Game child = game.clone();
+                    child.put(square % Game.DIM, square / Game.DIM);
+                    if (!child.isGameOver() && seen.add(child.getCanonicalHash()))
+                    {
+                        next.add(child);
+                    }
+                }
+            }
+            openings = next;
+        }
+        Collections.shuffle(openings, new Random(SEED));
+        return openings;
+    }
+
+
+    /**
+     * Plays a round robin and prints the result of each pairing.
+     *
+     * @param args number of games per pairing, followed by two or more engines, see {@link Entrant#parse(String)}
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        if (args.length < 3)
+        {
+            System.err.println("usage: Tournament <games> <engine> <engine> [<engine> ...]");
+            System.err.println(ENGINES);
+            return;
+        }
+        int games = Integer.parseInt(args[0]);
+        List<Entrant> entrants = new ArrayList<>();
+        for (int i = 1; i < args.length; i++)
+        {
+            entrants.add(Entrant.parse(args[i]));
+        }
+        Tournament tournament = new Tournament(Runtime.getRuntime().availableProcessors(), DEFAULT_OPENING_MOVES);
+        for (int i = 0; i < entrants.size(); i++)
+        {
+            for (int k = i + 1; k < entrants.size(); k++)
+            {
+                System.out.println(tournament.play(entrants.get(i), entrants.get(k), games));
+            }
+        }
+    }
+
+    /**
+     * Engine, which plays moves.<br>
+     * An instance is only used by one thread at a time.
+     */
+    @FunctionalInterface
+    public interface Engine
+    {
+
+        /**
+         * Puts a move.
+         *
+         * @param game game to move in, which is not over
+         * @return game after the move, which may be {@code game} itself
+         */
+        Game move(Game game);
+
+    }
+
+    /**
+     * Named engine configuration, which creates one engine per thread.
+     */
+    public static final class Entrant
+    {
+
+        private final String name;
+
+        private final ThreadLocal<Engine> engines;
+
+        /**
+         * Releases the threads of the engines created since the last {@link #shutdown()}.
+         */
+        private final List<Runnable> shutdowns;
+
+
+        /**
+         * Returns a new entrant.
+         *
+         * @param name name to report
+         * @param factory creates an engine for each thread
+         */
+        public Entrant(String name, Supplier<Engine> factory)
+        {
+            this(name, factory, new ArrayList<>());
+        }
+
+
+        private Entrant(String name, Supplier<Engine> factory, List<Runnable> shutdowns)
+        {
+            super();
+            this.name = name;
+            this.engines = ThreadLocal.withInitial(factory);
+            this.shutdowns = shutdowns;
+        }
+
+
+        /**
+         * Parses an engine configuration.<br>
+         * The configuration is the name of the engine class, followed by a colon and the search depth or a time budget
+         * in milliseconds, like {@code AI:4}, {@code AlphaBetaAI:100ms} or {@code AI2}. {@link AlphaBetaAI}s take the
+         * evaluation as an optional third part, like {@code AlphaBetaAI:4:matrix} or {@code AlphaBetaAI:4:tuned.bin},
+         * see {@link Patterns#parse(String)}; without it, they use the {@link Patterns#getDefault() default weights}.
+         * {@link AI}s get a pool with a single thread, so games on other threads do not slow them down. The threads of
+         * the engines are released at the end of each {@link Tournament#play(Entrant, Entrant, int)}.
+         *
+         * @param configuration configuration
+         * @return entrant
+         * @throws IllegalArgumentException if the configuration is not valid, e.g. if the depth or time budget is
+         *             missing or not positive, or if the weight file can't be read
+         */
+        public static Entrant parse(String configuration)
+        {
+            String[] parts = configuration.split(":", 3);
+            if (parts[0].equals("AI2"))
+            {
+                if (parts.length > 1)
+                {
+                    throw new IllegalArgumentException("AI2 takes no depth: " + configuration + "; " + ENGINES);
+                }
+                return new Entrant(configuration, () -> new AI2()::move);
+            }
+            String parameter = (parts.length > 1) ? parts[1] : "";
+            boolean timed = parameter.endsWith("ms");
+            String number = timed ? parameter.substring(0, parameter.length() - 2) : parameter;
+            int value;
+            try
+            {
+                value = Integer.parseInt(number);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException(
+                        "missing or invalid depth or time budget: " + configuration + "; " + ENGINES, e);
+            }
+            if (value < 1)
+            {
+                throw new IllegalArgumentException(
+                        "depth or time budget must be positive: " + configuration + "; " + ENGINES);
+            }
+            Duration budget = Duration.ofMillis(value);
+            if ((parts.length > 2) && !parts[0].equals("AlphaBetaAI"))
+            {
+                throw new IllegalArgumentException(
+                        parts[0] + " takes no evaluation: " + configuration + "; " + ENGINES);
+            }
+            List<Runnable> shutdowns = new ArrayList<>();
+            switch (parts[0])
+            {
+                case "AI":
+                    return new Entrant(configuration, () -> {
+                        ForkJoinPool pool = new ForkJoinPool(1);
+                        register(shutdowns, pool::shutdownNow);
+                        AI ai = new AI(pool);
+                        return timed ? game -> ai.move(game, budget) : game -> ai.move(game, value);
+                    }, shutdowns);
+                case "AI3":
+                    if (timed)
+                    {
+                        throw new IllegalArgumentException(
+                                "AI3 takes no time budget: " + configuration + "; " + ENGINES);
+                    }
+                    return new Entrant(configuration, () -> game -> AI3.move(game, value));
+                case "AlphaBetaAI":
+                    Patterns patterns = (parts.length > 2) ? weights(parts[2]) : Patterns.getDefault();
+                    return new Entrant(configuration, () -> {
+                        AlphaBetaAI ai = new AlphaBetaAI();
+                        ai.setPatterns(patterns);
+                        register(shutdowns, ai::close);
+                        return timed ? game -> ai.move(game, budget) : game -> ai.move(game, value);
+                    }, shutdowns);
+                default:
+                    throw new IllegalArgumentException("unknown engine: " + configuration + "; " + ENGINES);
+            }
+        }
+
+
+        /**
+         * Reads the weights of an evaluation option.
+         *
+         * @param option option, see {@link Patterns#parse(String)}
+         * @return weights, or {@code null} to evaluate by {@link AI#MATRIX}
+         * @throws IllegalArgumentException if the weight file can't be read
+         */
+        private static Patterns weights(String option)
+        {
+            try
+            {
+                return Patterns.parse(option);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalArgumentException("can't read weights: " + option + "; " + ENGINES, e);
+            }
+        }
+
+
+        /**
+         * Adds the release of an engine's threads, from any thread.
+         *
+         * @param shutdowns releases of the entrant
+         * @param shutdown release to add
+         */
+        private static void register(List<Runnable> shutdowns, Runnable shutdown)
+        {
+            synchronized (shutdowns)
+            {
+                shutdowns.add(shutdown);
+            }
+        }
+
+
+        /**
+         * Releases the threads of all engines created so far.<br>
+         * Called once the games are over, as engines are never used again after their thread has ended.
+         */
+        void shutdown()
+        {
+            synchronized (shutdowns)
+            {
+                shutdowns.forEach(Runnable::run);
+                shutdowns.clear();
+            }
+        }
+
+
+        /**
+         * Returns the engine of the current thread.
+         *
+         * @return engine
+         */
+        Engine get()
+        {
+            return engines.get();
+        }
+
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+    /**
+     * Result of the games between two engines, from the view of the first one.
+     */
+    public static final class Result
+    {
+
+        /**
+         * Z-score of the two-sided 95% confidence interval.
+         */
+        private static final double Z = 1.96;
+
+        private final Entrant first;
+
+        private final Entrant second;
+
+        private int wins;
+
+        private int draws;
+
+        private int losses;
+
+        private final long[] moveNanos = new long[2];
+
+        private final long[] moves = new long[2];
+
+        private long nanos;
+
+
+        private Result(Entrant first, Entrant second)
+        {
+            super();
+            this.first = first;
+            this.second = second;
+        }
+
+
+        private synchronized void add(int difference, long[] nanos, int[] moves)
+        {
+            if (difference > 0)
+            {
+                wins++;
+            }
+            else if (difference < 0)
+            {
+                losses++;
+            }
+            else
+            {
+                draws++;
+            }
+            for (int i = 0; i < moves.length; i++)
+            {
+                moveNanos[i] += nanos[i];
+                this.moves[i] += moves[i];
+            }
+        }
+
+
+        /**
+         * Returns the number of games won by the first engine.
+         *
+         * @return number of wins
+         */
+        public int getWins()
+        {
+            return wins;
+        }
+
+
+        /**
+         * Returns the number of drawn games.
+         *
+         * @return number of draws
+         */
+        public int getDraws()
+        {
+            return draws;
+        }
+
+
+        /**
+         * Returns the number of games lost by the first engine.
+         *
+         * @return number of losses
+         */
+        public int getLosses()
+        {
+            return losses;
+        }
+
+
+        /**
+         * Returns the number of games played.
+         *
+         * @return number of games
+         */
+        public int getGames()
+        {
+            return wins + draws + losses;
+        }
+
+
+        /**
+         * Returns the score of the first engine, counting a draw as half a win.
+         *
+         * @return score in range {@code [0, 1]}, {@code 0.5} if no game was played
+         */
+        public double getScore()
+        {
+            int games = getGames();
+            return (games == 0) ? 0.5 : (wins + 0.5 * draws) / games;
+        }
+
+
+        /**
+         * Estimates the Elo difference of the first engine to the second one from {@link #getScore()}.
+         *
+         * @return Elo difference, infinite if one engine won all games
+         */
+        public double getElo()
+        {
+            return elo(getScore());
+        }
+
+
+        /**
+         * Returns the half width of the 95% confidence interval of {@link #getElo()}.<br>
+         * The interval of the score is taken from the standard deviation of the score of the games, and converted to
+         * Elo.
+         *
+         * @return error of the Elo difference, infinite if the interval reaches a score of {@code 0} or {@code 1}, or
+         *         if no game was played
+         */
+        public double getEloError()
+        {
+            int games = getGames();
+            if (games == 0)
+            {
+                return Double.POSITIVE_INFINITY;
+            }
+            double score = getScore();
+            double variance = (wins * (1.0 - score) * (1.0 - score) + draws * (0.5 - score) * (0.5 - score)
+                    + losses * score * score) / games;
+            double error = Z * Math.sqrt(variance / games);
+            double upper = elo(score + error);
+            double lower = elo(score - error);
+            return (Double.isInfinite(upper) || Double.isInfinite(lower)) ? Double.POSITIVE_INFINITY
+                    : (upper - lower) / 2.0;
+        }
+
+
+        /**
+         * Returns the average time per move of an engine.
+         *
+         * @param engine {@code 0} for the first engine, {@code 1} for the second one
+         * @return time per move in milliseconds
+         */
+        public double getMillisPerMove(int engine)
+        {
+            return (moves[engine] == 0L) ? 0.0 : moveNanos[engine] / 1e6 / moves[engine];
+        }
+
+
+        /**
+         * Returns the number of games played per second of wall clock time.
+         *
+         * @return games per second
+         */
+        public double getGamesPerSecond()
+        {
+            return (nanos == 0L) ? 0.0 : getGames() / (nanos / 1e9);
+        }
+
+
+        private static double elo(double score)
+        {
+            if (score <= 0.0)
+            {
+                return Double.NEGATIVE_INFINITY;
+            }
+            if (score >= 1.0)
+            {
+                return Double.POSITIVE_INFINITY;
+            }
+            return -400.0 * Math.log10(1.0 / score - 1.0);
+        }
+
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s vs %s: +%d =%d -%d (%.1f%%), Elo %+.0f +/- %.0f, %.2f / %.2f ms per move, "
+                    + "%.1f games/s", first, second, wins, draws, losses, 100.0 * getScore(), getElo(), getEloError(),
+                    getMillisPerMove(0), getMillisPerMove(1), getGamesPerSecond());
+        }
+    }
+
+}
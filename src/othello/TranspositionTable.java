@@ -0,0 +1,233 @@
+package othello;
+
+
+/**
+ * Fixed-size hash table of search results, indexed by {@link Game#getHash()}.<br>
+ * Entries are stored in two primitive arrays, one for the keys and one for the packed results, so the table causes
+ * no garbage during search.<br>
+ * The table may be shared by several threads without locking: each key is stored xor its packed result, so an entry
+ * torn by concurrent writes no longer matches its key and is treated as a miss.
+ *
+ * @author yolo
+ */
+public class TranspositionTable
+{
+
+    /**
+     * Bound of a score, which is the exact value of the position.
+     */
+    static final int EXACT = 1;
+
+    /**
+     * Bound of a score, which the value of the position is greater than or equal to.
+     */
+    static final int LOWER = 2;
+
+    /**
+     * Bound of a score, which the value of the position is less than or equal to.
+     */
+    static final int UPPER = 3;
+
+    /**
+     * Value of {@link #move(long)}, if no best move is known.
+     */
+    static final int NO_MOVE = -1;
+
+    /**
+     * Bytes used by one entry.
+     */
+    private static final int ENTRY_SIZE = 2 * Long.BYTES;
+
+    /**
+     * Keys of the stored positions, xor their packed results.
+     */
+    private final long[] keys;
+
+    /**
+     * Packed results of the stored positions.<br>
+     * {@code 0}, if the entry is empty.
+     */
+    private final long[] data;
+
+    /**
+     * {@code keys.length - 1}.
+     */
+    private final int mask;
+
+    /**
+     * How entries are replaced.
+     */
+    private final Replacement replacement;
+
+    /**
+     * Age of the current search, to tell old entries from new ones.
+     */
+    private volatile int age;
+
+
+    /**
+     * Returns a new transposition table.
+     *
+     * @param megabytes maximum size in megabytes, has to be {@code 1} or higher
+     * @param replacement how entries are replaced
+     * @throws IllegalArgumentException if any argument is illegal
+     */
+    public TranspositionTable(int megabytes, Replacement replacement)
+    {
+        super();
+        if (megabytes < 1)
+        {
+            throw new IllegalArgumentException("megabytes has to be 1 or higher");
+        }
+        if (replacement == null)
+        {
+            throw new IllegalArgumentException("replacement must not be null");
+        }
+        long entries = Long.highestOneBit(((long)megabytes << 20) / ENTRY_SIZE);
+        int size = (int)Math.min(entries, 1 << 30);
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+        this.replacement = replacement;
+    }
+
+
+    /**
+     * Looks up a position.
+     *
+     * @param key hash of the position
+     * @return
+     *         <ul>
+     *         <li>the packed result, to be unpacked by {@link #score(long)}, {@link #depth(long)},
+     *         {@link #bound(long)} and {@link #move(long)}</li>
+     *         <li>{@code 0}, if the position is not stored</li>
+     *         </ul>
+     */
+    long probe(long key)
+    {
+        int index = (int)key & mask;
+        long data = this.data[index];
+        if ((data != 0L) && ((keys[index] ^ data) == key))
+        {
+            return data;
+        }
+        return 0L;
+    }
+
+
+    /**
+     * Stores a position, if the {@link Replacement} allows it.
+     *
+     * @param key hash of the position
+     * @param score score of the position
+     * @param depth remaining depth of the search, has to be in range {@code [0, 255]}
+     * @param bound one of {@link #EXACT}, {@link #LOWER} and {@link #UPPER}
+     * @param move bit index of the best move, or {@link #NO_MOVE}
+     */
+    void store(long key, int score, int depth, int bound, int move)
+    {
+        int index = (int)key & mask;
+        long old = this.data[index];
+        boolean same = (old != 0L) && ((keys[index] ^ old) == key);
+        int age = this.age & 0xFF;
+        if ((replacement == Replacement.DEPTH_PREFERRED) && (old != 0L) && !same && (age(old) == age)
+                && (depth(old) > depth))
+        {
+            return;
+        }
+        if ((move == NO_MOVE) && same)
+        {
+            move = move(old);
+        }
+        long data = (score & 0xFFFFFFFFL)
+                    | ((long)depth << 32)
+                    | ((long)bound << 40)
+                    | ((long)(move + 1) << 42)
+                    | ((long)age << 49);
+        this.data[index] = data;
+        keys[index] = key ^ data;
+    }
+
+
+    /**
+     * Starts a new search.<br>
+     * Entries of older searches may be replaced by shallower ones from now on.
+     */
+    public void newSearch()
+    {
+        age++;
+    }
+
+
+    /**
+     * Removes all entries.<br>
+     * Must not be called during a search.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = 0L;
+            data[i] = 0L;
+        }
+    }
+
+
+    /**
+     * Returns the capacity of the table, i.e. the number of entries it can hold, no matter how many are stored.
+     *
+     * @return capacity in entries
+     */
+    public int getSize()
+    {
+        return keys.length;
+    }
+
+
+    static int score(long data)
+    {
+        return (int)data;
+    }
+
+
+    static int depth(long data)
+    {
+        return (int)(data >>> 32) & 0xFF;
+    }
+
+
+    static int bound(long data)
+    {
+        return (int)(data >>> 40) & 0x3;
+    }
+
+
+    static int move(long data)
+    {
+        return ((int)(data >>> 42) & 0x7F) - 1;
+    }
+
+
+    private static int age(long data)
+    {
+        return (int)(data >>> 49) & 0xFF;
+    }
+
+    /**
+     * Policies for replacing entries.
+     */
+    public enum Replacement
+    {
+        /**
+         * A new entry always replaces the old one.
+         */
+        ALWAYS,
+
+        /**
+         * A new entry replaces an entry of another position of the current search only if it is searched at least as
+         * deep.
+         */
+        DEPTH_PREFERRED;
+    }
+
+}
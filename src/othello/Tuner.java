@@ -0,0 +1,235 @@
+package othello;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Fits the weights of {@link Patterns} to the results of games in {@link Shard}s, by stochastic gradient descent on the
+ * squared error.<br>
+ * Shards are streamed, one per thread at a time, so the data set never has to fit into memory. All threads update the
+ * same weights without locks; as each position only touches a few of the weights, lost updates are rare and do not
+ * hurt the descent. Every position is learned a second time with the colours swapped and the result negated.
+ *
+ * @author yolo
+ */
+public final class Tuner
+{
+
+    /**
+     * Evaluation units per piece of the final result.
+     */
+    public static final int SCALE = 100;
+
+    /**
+     * Default learning rate.
+     */
+    public static final double DEFAULT_RATE = 0.002;
+
+    /**
+     * Default number of passes over the data set.
+     */
+    public static final int DEFAULT_EPOCHS = 10;
+
+    /**
+     * Weights being fitted, indexed like {@link Patterns#weights}.
+     */
+    private final float[][] weights = new float[Patterns.PHASES][Patterns.PHASE_SIZE];
+
+    /**
+     * Learning rate.
+     */
+    private final float rate;
+
+
+    /**
+     * Returns a new tuner, with all weights {@code 0}.
+     *
+     * @param rate learning rate
+     * @throws IllegalArgumentException if {@code rate} is not positive
+     */
+    public Tuner(double rate)
+    {
+        super();
+        if (!(rate > 0.0))
+        {
+            throw new IllegalArgumentException("rate has to be positive");
+        }
+        this.rate = (float)rate;
+    }
+
+
+    /**
+     * Makes one pass over a data set, learning each shard on a thread of an executor.
+     *
+     * @param shards shards of the data set
+     * @param executor executor to learn on
+     * @return root mean squared error of the predictions during the pass, in pieces
+     * @throws IOException if a shard can't be read
+     * @throws InterruptedException if interrupted while waiting for the executor
+     */
+    public double train(List<Path> shards, ExecutorService executor) throws IOException, InterruptedException
+    {
+        List<Future<double[]>> errors = new ArrayList<>();
+        for (Path shard : shards)
+        {
+            errors.add(executor.submit(() -> train(shard)));
+        }
+        double squares = 0.0;
+        double count = 0.0;
+        for (Future<double[]> error : errors)
+        {
+            try
+            {
+                double[] shard = error.get();
+                squares += shard[0];
+                count += shard[1];
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof IOException)
+                {
+                    throw (IOException)e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return (count == 0.0) ? 0.0 : Math.sqrt(squares / count) / SCALE;
+    }
+
+
+    /**
+     * Returns the fitted weights, rounded and clamped to the range of {@code short}.
+     *
+     * @return weights
+     */
+    public Patterns getPatterns()
+    {
+        short[][] rounded = new short[Patterns.PHASES][Patterns.PHASE_SIZE];
+        for (int phase = 0; phase < Patterns.PHASES; phase++)
+        {
+            for (int i = 0; i < Patterns.PHASE_SIZE; i++)
+            {
+                int weight = Math.round(weights[phase][i]);
+                rounded[phase][i] = (short)Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, weight));
+            }
+        }
+        return new Patterns(rounded);
+    }
+
+
+    /**
+     * Learns all positions of a shard.
+     *
+     * @param shard shard
+     * @return sum of the squared errors and number of predictions
+     * @throws IOException if the shard can't be read
+     */
+    private double[] train(Path shard) throws IOException
+    {
+        PatternState state = new PatternState();
+        double squares = 0.0;
+        long count = 0L;
+        try (Shard.Reader reader = new Shard.Reader(shard))
+        {
+            while (reader.next())
+            {
+                long dark = reader.getDark();
+                long light = reader.getLight();
+                int phase = Patterns.phase(Game.DIM * Game.DIM - Long.bitCount(dark | light));
+                float error = learn(state, dark, light, phase, reader.getResult() * SCALE);
+                squares += error * error;
+                error = learn(state, light, dark, phase, -reader.getResult() * SCALE);
+                squares += error * error;
+                count += 2L;
+            }
+        }
+        return new double[] { squares, count };
+    }
+
+
+    /**
+     * Takes one step of gradient descent on a position.
+     *
+     * @param state indices to reuse
+     * @param dark pieces of {@link Player#DARK}
+     * @param light pieces of {@link Player#LIGHT}
+     * @param phase game phase
+     * @param target score to learn, from the view of {@link Player#DARK}
+     * @return error of the prediction before the step
+     */
+    private float learn(PatternState state, long dark, long light, int phase, int target)
+    {
+        state.set(dark, light);
+        float[] phaseWeights = weights[phase];
+        int[] offsets = Patterns.INSTANCE_OFFSETS;
+        float prediction = 0.0f;
+        for (int instance = 0; instance < offsets.length; instance++)
+        {
+            prediction += phaseWeights[offsets[instance] + state.getIndex(instance)];
+        }
+        float error = target - prediction;
+        float step = rate * error;
+        for (int instance = 0; instance < offsets.length; instance++)
+        {
+            phaseWeights[offsets[instance] + state.getIndex(instance)] += step;
+        }
+        return error;
+    }
+
+
+    /**
+     * Fits weights to all shards in a directory and writes them to a weight file.<br>
+     * Put the file on the class path as {@link Patterns#RESOURCE}, e.g. into {@code res}, so every {@link AlphaBetaAI}
+     * evaluates with it, see {@link Patterns#getDefault()}. Without that, pass the file to {@link SelfPlay} or
+     * {@link Tournament} as the weights of their engines.
+     *
+     * @param args shard directory, weight file, and optionally the number of epochs, the number of threads and the
+     *            learning rate
+     * @throws Exception if a shard can't be read or the weight file can't be written
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if ((args.length < 2) || (args.length > 5))
+        {
+            System.err.println("usage: Tuner <shard directory> <weight file> [epochs] [threads] [rate]");
+            return;
+        }
+        List<Path> shards = Shard.list(Paths.get(args[0]));
+        Path file = Paths.get(args[1]);
+        int epochs = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_EPOCHS;
+        int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        double rate = (args.length > 4) ? Double.parseDouble(args[4]) : DEFAULT_RATE;
+        Tuner tuner = new Tuner(rate);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            for (int epoch = 1; epoch <= epochs; epoch++)
+            {
+                long start = System.nanoTime();
+                double error = tuner.train(shards, executor);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("epoch %d: error %.2f pieces, %.1f s%n", epoch, error, seconds);
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        try (OutputStream out = Files.newOutputStream(file))
+        {
+            tuner.getPatterns().write(out);
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package othello;
+
+
+import java.util.Random;
+
+
+/**
+ * Zobrist keys for hashing othello positions.<br>
+ * The keys are generated from a fixed seed, so hashes stay the same between runs.
+ *
+ * @author yolo
+ */
+final class Zobrist
+{
+
+    /**
+     * Seed of the key generator.
+     */
+    private static final long SEED = 0x6F7468656C6C6FL;
+
+    /**
+     * Keys of the pieces of {@link Player#DARK}, indexed by bit index.
+     */
+    private static final long[] DARK = new long[Game.DIM * Game.DIM];
+
+    /**
+     * Keys of the pieces of {@link Player#LIGHT}, indexed by bit index.
+     */
+    private static final long[] LIGHT = new long[Game.DIM * Game.DIM];
+
+    /**
+     * {@link #DARK} xor {@link #LIGHT}, which turns a piece on a square.
+     */
+    private static final long[] TURN = new long[Game.DIM * Game.DIM];
+
+    /**
+     * Key of {@link Player#LIGHT} being the current player.
+     */
+    static final long SIDE;
+
+    static
+    {
+        Random random = new Random(SEED);
+        for (int square = 0; square < DARK.length; square++)
+        {
+            DARK[square] = random.nextLong();
+            LIGHT[square] = random.nextLong();
+            TURN[square] = DARK[square] ^ LIGHT[square];
+        }
+        SIDE = random.nextLong();
+    }
+
+
+    private Zobrist()
+    {
+        super();
+    }
+
+
+    /**
+     * Calculates the hash of a position from scratch.
+     *
+     * @param dark pieces of {@link Player#DARK}
+     * @param light pieces of {@link Player#LIGHT}
+     * @param currentPlayer current player
+     * @return hash of the position
+     */
+    static long hash(long dark, long light, Player currentPlayer)
+    {
+        long hash = (currentPlayer == Player.LIGHT) ? SIDE : 0L;
+        for (; dark != 0L; dark &= dark - 1L)
+        {
+            hash ^= DARK[Long.numberOfTrailingZeros(dark)];
+        }
+        for (; light != 0L; light &= light - 1L)
+        {
+            hash ^= LIGHT[Long.numberOfTrailingZeros(light)];
+        }
+        return hash;
+    }
+
+
+    /**
+     * Returns the change of the hash caused by putting a piece and turning pieces.<br>
+     * Applying the same change again takes the move back.
+     *
+     * @param player player who puts the piece
+     * @param square bit index of the put piece
+     * @param flips mask of all turned pieces
+     * @return value to xor into the hash
+     */
+    static long move(Player player, int square, long flips)
+    {
+        long hash = (player == Player.DARK) ? DARK[square] : LIGHT[square];
+        for (; flips != 0L; flips &= flips - 1L)
+        {
+            hash ^= TURN[Long.numberOfTrailingZeros(flips)];
+        }
+        return hash;
+    }
+
+}